@@ -0,0 +1,227 @@
+package main;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import ontology.GOType;
+import ontology.GeneOntology;
+
+/**
+ * Measures the per-pair latency of the most informative common ancestor
+ * (MICA) lookup of a GeneOntology, comparing the scan over the common
+ * ancestors used before the ancestor lists were ranked by IC (before) with
+ * the walk over the ranked lists used by GeneOntology.getMICA (after), and
+ * the time and memory allocated to read the annotations of gene product
+ * pairs, comparing copies (getAnnotationIndexes) with read-only views
+ * (getAnnotationView)
+ * Usage: java -cp GSS.jar main.Benchmark GO_FILE ANNOTATION_FILE [PAIRS] [-rel] [-st]
+ */
+public class Benchmark
+{
+	//The number of random term pairs (by default) and the seed used to draw them
+	private static final int PAIRS = 1000000;
+	//The number of random gene product pairs
+	private static final int GENE_PAIRS = 100000;
+	private static final long SEED = 42;
+	private static boolean useAllRelations = false;
+
+	public static void main(String[] args) throws Exception
+	{
+		if(args.length < 2)
+		{
+			System.err.println("Usage: java -cp GSS.jar main.Benchmark GO_FILE ANNOTATION_FILE [PAIRS] [-rel] [-st]");
+			System.exit(1);
+		}
+		int pairs = PAIRS;
+		boolean structural = false;
+		for(int i = 2; i < args.length; i++)
+		{
+			if(args[i].equalsIgnoreCase("-rel"))
+				useAllRelations = true;
+			else if(args[i].equalsIgnoreCase("-st"))
+				structural = true;
+			else
+				pairs = Integer.parseInt(args[i]);
+		}
+		GeneOntology go = new GeneOntology.Builder(args[0], args[1]).useAllRelations(useAllRelations)
+				.structural(structural).build();
+		System.out.println("Classes: " + go.termCount());
+
+		//Draw the pairs among the annotated classes
+		int[] annotated = new int[go.termCount()];
+		int count = 0;
+		for(int i = 0; i < go.termCount(); i++)
+			if(go.countAnnotations(i) > 0)
+				annotated[count++] = i;
+		Random r = new Random(SEED);
+		int[] terms1 = new int[pairs];
+		int[] terms2 = new int[pairs];
+		for(int i = 0; i < pairs; i++)
+		{
+			terms1[i] = annotated[r.nextInt(count)];
+			terms2[i] = annotated[r.nextInt(count)];
+		}
+
+		//Check that both lookups find equally informative ancestors
+		int differences = 0;
+		for(int i = 0; i < pairs; i++)
+			if(go.getInfoContent(scanMICA(go, terms1[i], terms2[i])) != go.getInfoContent(go.getMICA(terms1[i], terms2[i])))
+				differences++;
+		System.out.println("Pairs: " + pairs + " (" + differences + " with a MICA of different IC)");
+
+		//Warm up and time both lookups
+		for(int round = 0; round < 2; round++)
+		{
+			long before = time(go, terms1, terms2, true);
+			long after = time(go, terms1, terms2, false);
+			if(round == 1)
+			{
+				System.out.println("Before (scan): " + (before / pairs) + " ns/pair");
+				System.out.println("After (walk): " + (after / pairs) + " ns/pair");
+			}
+		}
+
+		//Draw the gene product pairs among those annotated to the roots
+		HashSet<String> geneSet = new HashSet<String>();
+		for(GOType t : GOType.values())
+			if(go.getRootIndex(t) > -1)
+				geneSet.addAll(go.getAnnotationsGO(go.getRootIndex(t)));
+		if(geneSet.isEmpty())
+			return;
+		String[] genes = geneSet.toArray(new String[geneSet.size()]);
+		String[] genes1 = new String[GENE_PAIRS];
+		String[] genes2 = new String[GENE_PAIRS];
+		for(int i = 0; i < GENE_PAIRS; i++)
+		{
+			genes1[i] = genes[r.nextInt(genes.length)];
+			genes2[i] = genes[r.nextInt(genes.length)];
+		}
+
+		//Warm up and measure both ways of reading the annotations
+		for(int round = 0; round < 2; round++)
+		{
+			long[] copy = allocation(go, genes1, genes2, true);
+			long[] view = allocation(go, genes1, genes2, false);
+			if(round == 1)
+			{
+				System.out.println("Gene pairs: " + GENE_PAIRS);
+				System.out.println("Copies: " + (copy[0] / GENE_PAIRS) + " ns/pair, " +
+						(copy[1] / GENE_PAIRS) + " bytes/pair, " + copy[2] + " collections");
+				System.out.println("Views: " + (view[0] / GENE_PAIRS) + " ns/pair, " +
+						(view[1] / GENE_PAIRS) + " bytes/pair, " + view[2] + " collections");
+			}
+		}
+	}
+
+	//Counts the common annotations of all gene product pairs, reading them as
+	//copies or as views, and returns the time in nanoseconds, the bytes
+	//allocated by this thread (or -1 if the JVM doesn't measure them) and the
+	//number of garbage collections
+	private static long[] allocation(GeneOntology go, String[] genes1, String[] genes2, boolean copy)
+	{
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long bytes = allocatedBytes(threads, id);
+		long collections = collectionCount();
+		long sum = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < genes1.length; i++)
+		{
+			Set<Integer> set1, set2;
+			if(copy)
+			{
+				set1 = go.getAnnotationIndexes(genes1[i]);
+				set2 = go.getAnnotationIndexes(genes2[i]);
+			}
+			else
+			{
+				set1 = go.getAnnotationView(genes1[i]);
+				set2 = go.getAnnotationView(genes2[i]);
+			}
+			for(int t : set1)
+				if(set2.contains(t))
+					sum++;
+		}
+		long time = System.nanoTime() - start;
+		if(bytes > -1)
+			bytes = allocatedBytes(threads, id) - bytes;
+		collections = collectionCount() - collections;
+		//Use the result so the lookups aren't optimized away
+		if(sum == Long.MIN_VALUE)
+			System.out.println(sum);
+		return new long[]{time, bytes, collections};
+	}
+
+	//Gets the bytes allocated by a thread, if the JVM measures them
+	private static long allocatedBytes(ThreadMXBean threads, long id)
+	{
+		if(threads instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(id);
+		return -1;
+	}
+
+	//Gets the total number of garbage collections so far
+	private static long collectionCount()
+	{
+		long count = 0;
+		for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	//Computes the MICA by scanning all common ancestors for the one with the
+	//fewest annotations (the lookup used before the ranked ancestor lists)
+	private static int scanMICA(GeneOntology go, int index1, int index2)
+	{
+		if(useAllRelations)
+		{
+			if(go.getParents(index2).contains(index1))
+				return index1;
+			if(go.getParents(index1).contains(index2))
+				return index2;
+		}
+		else
+		{
+			if(go.containsSubClass(index2, index1))
+				return index1;
+			if(go.containsSubClass(index1, index2))
+				return index2;
+		}
+		int mica = -1;
+		int min = 1000000;
+		HashSet<Integer> common = go.getCommonAncestors(index1, index2);
+		for(Integer a : common)
+		{
+			int newCount = go.countAnnotations(a);
+			if(newCount < min)
+			{
+				min = newCount;
+				mica = a;
+			}
+		}
+		return mica;
+	}
+
+	//Times the MICA lookup of all pairs, in nanoseconds
+	private static long time(GeneOntology go, int[] terms1, int[] terms2, boolean scan)
+	{
+		long sum = 0;
+		long start = System.nanoTime();
+		for(int i = 0; i < terms1.length; i++)
+		{
+			if(scan)
+				sum += scanMICA(go, terms1[i], terms2[i]);
+			else
+				sum += go.getMICA(terms1[i], terms2[i]);
+		}
+		long time = System.nanoTime() - start;
+		//Use the result so the lookups aren't optimized away
+		if(sum == Long.MIN_VALUE)
+			System.out.println(sum);
+		return time;
+	}
+}
@@ -33,6 +33,8 @@ import metrics.TermMeasure;
 import metrics.TermSimilarityMetric;
 import ontology.GOType;
 import ontology.GeneOntology;
+import ontology.MICATable;
+import ontology.OntologySnapshot;
 import util.NumberFormatter;
 
 
@@ -49,6 +51,13 @@ public class Main
 	private static boolean listOfPairs = false;
 	private static boolean compareSets = false;
 	private static GOType type = null;
+	private static String saveSnapshot = null;
+	private static String loadSnapshot = null;
+	private static String buildMICATable = null;
+	private static String micaTable = null;
+	private static int threads = Runtime.getRuntime().availableProcessors();
+	private static boolean offHeap = false;
+	private static String offHeapDir = null;
 
 	//Logging:
 	//- Output stream .geneTerms.get
@@ -98,6 +107,7 @@ public class Main
 		System.out.println("term Measure:" + termMeasure);
 		System.out.println("gene Measure:" + geneMeasure);
 		System.out.println("GO type:" + type);
+		System.out.println("threads:" + threads);
 		//Open and read files
 		openOntology();
 		parseTermMeasure();
@@ -205,7 +215,7 @@ public class Main
 		System.out.println("-a, --annotation FILE_PATH\tPath to the tabular annotation file (GAF, BLAST2GO or 2-column table format");
 		System.out.println("-s1, --study1 FILE_PATH\tPath to the fisrt file listing the study set gene products");
 		System.out.println("-s2, --study2 FILE_PATH\tPath to the second file listing the study set gene products");
-		System.out.println("-t, --type ['molecular_function'/'biological_process'/'cellular_component']");
+		System.out.println("-t, --type ['molecular_function'/'biological_process'/'cellular_component'] (only the classes that affect this sub-ontology are loaded)");
 		System.out.println("-st --structural Compute structural IC");
 		System.out.println("-rel, --use_all_relations Infer annotations through 'part_of' and other non-hierarchical relations]");
 		System.out.println("-lp, --list_of_pairs The study set is a list of pairs of genes");
@@ -213,6 +223,13 @@ public class Main
 		System.out.println("-res, --result\tFILE_PATH\tPath to the output similarity result file]");
 		System.out.println("-tsm, --term_metric\tMetric used to analyse semantic similarity between ontology terms");
 		System.out.println("-gsm, --gene_metric\tMetric used to analyse semantic similarity between genes or gene products");
+		System.out.println("-th, --threads NUMBER\tNumber of threads used to build the Gene Ontology (default: number of processors)");
+		System.out.println("-bmt, --build-mica-table FILE_PATH\tCompute the MICA of all pairs of annotated terms, save them to a table file and exit");
+		System.out.println("-mt, --mica-table FILE_PATH\tRead the MICA of pairs of annotated terms from a table file, if it matches the input files and options");
+		System.out.println("-ss, --save-snapshot FILE_PATH\tSave the loaded Gene Ontology and annotations to a binary snapshot file");
+		System.out.println("-ls, --load-snapshot FILE_PATH\tLoad the Gene Ontology and annotations from a binary snapshot file, if it matches the input files and options");
+		System.out.println("-oh, --off-heap\tStore the transitive closure, ancestor indexes and annotations in direct memory, off the Java heap");
+		System.out.println("-ohd, --off-heap-dir DIRECTORY\tStore the transitive closure, ancestor indexes and annotations off the Java heap, in temporary files in the directory");
 		System.exit(0);		
 	}
 
@@ -321,9 +338,84 @@ public class Main
 	{
 		try
 		{
-			System.out.println(df.format(new Date()) + " - Reading Gene Ontology and annotations");
-			go = new GeneOntology(goFile, annotFile, useAllRelations, structural);
-			System.out.println(df.format(new Date()) + " - Finished");
+			byte[] key = null;
+			if(loadSnapshot != null || saveSnapshot != null || buildMICATable != null || micaTable != null)
+				key = OntologySnapshot.getKey(goFile, annotFile, useAllRelations, structural, type);
+			if(loadSnapshot != null)
+			{
+				System.out.println(df.format(new Date()) + " - Reading snapshot '" + loadSnapshot + "'");
+				try
+				{
+					go = OntologySnapshot.load(loadSnapshot, key);
+				}
+				catch(IOException e)
+				{
+					System.err.println(df.format(new Date()) + " - Warning: could not read snapshot '" + loadSnapshot + "'!");
+					e.printStackTrace();
+				}
+				if(go == null)
+					System.out.println(df.format(new Date()) + " - Snapshot doesn't match the input files and options");
+				else
+					System.out.println(df.format(new Date()) + " - Finished");
+			}
+			if(go == null)
+			{
+				System.out.println(df.format(new Date()) + " - Reading Gene Ontology and annotations");
+				go = new GeneOntology.Builder(goFile, annotFile).useAllRelations(useAllRelations)
+						.structural(structural).type(type).threads(threads).build();
+				System.out.println(df.format(new Date()) + " - Finished (transitive closure in " + go.getClosureTime() + " ms)");
+				if(saveSnapshot != null)
+				{
+					System.out.println(df.format(new Date()) + " - Saving snapshot '" + saveSnapshot + "'");
+					try
+					{
+						OntologySnapshot.save(go, saveSnapshot, key);
+						System.out.println(df.format(new Date()) + " - Finished");
+					}
+					catch(IOException e)
+					{
+						System.err.println(df.format(new Date()) + " - Warning: could not save snapshot '" + saveSnapshot + "'!");
+						e.printStackTrace();
+					}
+				}
+			}
+			if(offHeap)
+			{
+				System.out.println(df.format(new Date()) + " - Moving the closure and annotations off the heap");
+				try
+				{
+					go = go.offHeap(offHeapDir == null ? null : new File(offHeapDir));
+					System.out.println(df.format(new Date()) + " - Finished");
+				}
+				catch(IOException e)
+				{
+					System.err.println(df.format(new Date()) + " - Warning: could not move the closure and annotations off the heap!");
+					e.printStackTrace();
+				}
+			}
+			if(buildMICATable != null)
+				saveMICATable(key);
+			if(micaTable != null)
+			{
+				System.out.println(df.format(new Date()) + " - Reading MICA table '" + micaTable + "'");
+				MICATable t = null;
+				try
+				{
+					t = MICATable.load(micaTable, key);
+				}
+				catch(IOException e)
+				{
+					System.err.println(df.format(new Date()) + " - Warning: could not read MICA table '" + micaTable + "'!");
+					e.printStackTrace();
+				}
+				if(t == null)
+					System.out.println(df.format(new Date()) + " - MICA table doesn't match the input files and options");
+				else
+				{
+					go = go.withMICATable(t);
+					System.out.println(df.format(new Date()) + " - Finished");
+				}
+			}
 		}
 
 		catch(IOException e)
@@ -344,6 +436,26 @@ public class Main
 		}	
 	}
 
+	private static void saveMICATable(byte[] key)
+	{
+		System.out.println(df.format(new Date()) + " - Computing MICA table '" + buildMICATable + "'");
+		try
+		{
+			MICATable.build(go, buildMICATable, key, threads);
+		}
+		catch(IOException e)
+		{
+			System.err.println(df.format(new Date()) + " - Error: could not save MICA table '" + buildMICATable + "'!");
+			e.printStackTrace();
+			try{ log.close(); }
+			catch (IOException f){ /*Do nothing*/ }
+			System.exit(1);
+		}
+		System.out.println(df.format(new Date()) + " - Finished");
+		exit();
+	}
+
+
 	/**
 	 * Opens a set file containing pairs of gene products, which is expected to be a plain text file
 	 * in which the elements of the pair are separated by one of: space, tab, comma, or
@@ -473,41 +585,41 @@ public class Main
 		if (termMeasure == null)
 			return;
 		if (termMeasure.equals(TermMeasure.RESNIK))
-			termMetric = new Resnik();
+			termMetric = new Resnik(go);
 		else if (termMeasure.equals(TermMeasure.LIN))
-			termMetric = new Lin();
+			termMetric = new Lin(go);
 		else if (termMeasure.equals(TermMeasure.JIANG_CONRATH))
-			termMetric = new JiangConrath();
+			termMetric = new JiangConrath(go);
 		else if (termMeasure.equals(TermMeasure.PEKAR_STAAB))
-			termMetric = new PekarStaab();		
+			termMetric = new PekarStaab(go);		
 	}
 	private static void parseGeneMeasure()
 	{
 		if (geneMeasure == null)
 			return;
 		if (geneMeasure.equals(GeneMeasure.SIM_UI))
-			geneMetric = new SimUI();
+			geneMetric = new SimUI(go, type);
 		else if (geneMeasure.equals(GeneMeasure.SIM_GIC))
-			geneMetric = new SimGIC();
+			geneMetric = new SimGIC(go, type);
 		else if (geneMeasure.equals(GeneMeasure.COSIM))
-			geneMetric = new CoSim();
+			geneMetric = new CoSim(go, type);
 		else if (geneMeasure.equals(GeneMeasure.MAXIMUM))
-			geneMetric = new Maximum(termMetric);
+			geneMetric = new Maximum(go, type, termMetric);
 		else if (geneMeasure.equals(GeneMeasure.BEST_MATCH_AVERAGE))
-			geneMetric = new BestMatchAverage(termMetric);
+			geneMetric = new BestMatchAverage(go, type, termMetric);
 	}
 	private static void parseGeneSet()
 	{
 		if (geneMeasure == null)
 			return;
 		if (geneMeasure.equals(GeneMeasure.SIM_UI))
-			geneSet = new SimUI();
+			geneSet = new SimUI(go, type);
 		else if (geneMeasure.equals(GeneMeasure.SIM_GIC))
-			geneSet = new SimGIC();
+			geneSet = new SimGIC(go, type);
 		else if (geneMeasure.equals(GeneMeasure.COSIM))
-			geneSet = new CoSim();
+			geneSet = new CoSim(go, type);
 		else if (geneMeasure.equals(GeneMeasure.BEST_MATCH_AVERAGE))
-			geneSet = new BestMatchAverage(termMetric);
+			geneSet = new BestMatchAverage(go, type, termMetric);
 	}
 
 
@@ -576,6 +688,49 @@ public class Main
 			{
 				geneMeasure = GeneMeasure.parse(args[++i]);
 			}
+			else if((args[i].equalsIgnoreCase("-th") || args[i].equalsIgnoreCase("--threads")) &&
+					i < args.length-1)
+			{
+				try
+				{
+					threads = Math.max(1, Integer.parseInt(args[++i]));
+				}
+				catch(NumberFormatException e)
+				{
+					System.err.println("Error: the number of threads must be an integer.");
+					exitError();
+				}
+			}
+			else if((args[i].equalsIgnoreCase("-bmt") || args[i].equalsIgnoreCase("--build-mica-table")) &&
+					i < args.length-1)
+			{
+				buildMICATable = args[++i];
+			}
+			else if((args[i].equalsIgnoreCase("-mt") || args[i].equalsIgnoreCase("--mica-table")) &&
+					i < args.length-1)
+			{
+				micaTable = args[++i];
+			}
+			else if((args[i].equalsIgnoreCase("-ss") || args[i].equalsIgnoreCase("--save-snapshot")) &&
+					i < args.length-1)
+			{
+				saveSnapshot = args[++i];
+			}
+			else if((args[i].equalsIgnoreCase("-ls") || args[i].equalsIgnoreCase("--load-snapshot")) &&
+					i < args.length-1)
+			{
+				loadSnapshot = args[++i];
+			}
+			else if(args[i].equalsIgnoreCase("-oh") || args[i].equalsIgnoreCase("--off-heap"))
+			{
+				offHeap = true;
+			}
+			else if((args[i].equalsIgnoreCase("-ohd") || args[i].equalsIgnoreCase("--off-heap-dir")) &&
+					i < args.length-1)
+			{
+				offHeap = true;
+				offHeapDir = args[++i];
+			}
 			else if(args[i].equalsIgnoreCase("-h") || args[i].equalsIgnoreCase("--help"))
 			{
 				exitHelp();
@@ -678,6 +833,9 @@ public class Main
 			System.err.println("Error: you must specify an input annotation file.");
 			exitError();
 		}
+		//Building a MICA table doesn't need a study set or measures
+		if(buildMICATable != null)
+			return;
 		if(studyFile1 == null)
 		{
 			System.err.println("Error: you must specify an input study-set file.");
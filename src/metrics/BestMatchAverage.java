@@ -4,15 +4,19 @@ import java.util.HashMap;
 import java.util.Set;
 import java.util.Vector;
 
-import main.Main;
 import ontology.GOType;
+import ontology.GeneOntology;
 
 public class BestMatchAverage implements GeneSimilarityMetric, GeneSet
 {
-	private TermSimilarityMetric measure;
+	private final GeneOntology go;
+	private final GOType type;
+	private final TermSimilarityMetric measure;
 
-	public BestMatchAverage(TermSimilarityMetric measure)
+	public BestMatchAverage(GeneOntology go, GOType type, TermSimilarityMetric measure)
 	{
+		this.go = go;
+		this.type = type;
 		this.measure = measure;
 	}
 
@@ -23,31 +27,30 @@ public class BestMatchAverage implements GeneSimilarityMetric, GeneSet
 			return 1;
 
 		//Get the terms of the two genes
-		Set<String> terms1;
-		Set<String> terms2;
-		GOType t = Main.getType();
-		if(t == null)
+		Set<Integer> terms1;
+		Set<Integer> terms2;
+		if(type == null)
 		{
-			terms1 = Main.getGO().getAnnotationsGene(gene1);
-			terms2 = Main.getGO().getAnnotationsGene(gene2);
+			terms1 = go.getAnnotationView(gene1);
+			terms2 = go.getAnnotationView(gene2);
 		}
 		else
 		{
-			terms1 = Main.getGO().getAnnotationsGene(gene1,t);
-			terms2 = Main.getGO().getAnnotationsGene(gene2,t);
+			terms1 = go.getAnnotationView(gene1,type);
+			terms2 = go.getAnnotationView(gene2,type);
 		}
 
 		//Initialize the scores
 		double score1 = 0.0;
 		double score2 = 0.0;
 		//Identify all common terms and set them as default best matches
-		HashMap<String,Double> gene1Scores = new HashMap<String,Double>();
-		HashMap<String,Double> gene2Scores = new HashMap<String,Double>();
+		HashMap<Integer,Double> gene1Scores = new HashMap<Integer,Double>();
+		HashMap<Integer,Double> gene2Scores = new HashMap<Integer,Double>();
 
 		//Compute the maximum similarity between the genes' terms
-		for(String t1: terms1)
+		for(int t1: terms1)
 		{	
-			for(String t2: terms2)
+			for(int t2: terms2)
 			{
 				double sim = measure.getTermSimilarity(t1, t2);
 
@@ -58,10 +61,10 @@ public class BestMatchAverage implements GeneSimilarityMetric, GeneSet
 			}
 		}
 
-		for(String term: gene1Scores.keySet())
+		for(int term: gene1Scores.keySet())
 			score1 += gene1Scores.get(term);
 
-		for(String term: gene2Scores.keySet())
+		for(int term: gene2Scores.keySet())
 			score2 += gene2Scores.get(term);	
 
 		score1 /= terms1.size();
@@ -73,12 +76,12 @@ public class BestMatchAverage implements GeneSimilarityMetric, GeneSet
 
 	public double  getSetSimilarity(Vector<String> geneSet1, Vector<String> geneSet2) 
 	{
-		HashMap<String, Integer> count1 = Main.getGO().termCountMap(geneSet1, Main.getType());
+		HashMap<String, Integer> count1 = go.termCountMap(geneSet1, type);
 
 		if(geneSet1.equals(geneSet2))
 			return 1.0;
 
-		HashMap<String, Integer> count2 = Main.getGO().termCountMap(geneSet2, Main.getType());
+		HashMap<String, Integer> count2 = go.termCountMap(geneSet2, type);
 		double maxScore = 0.0;
 		String bestMatch = null;
 		double score1 = 0.0;
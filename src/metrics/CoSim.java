@@ -3,29 +3,40 @@ package metrics;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.Vector;
-import main.Main;
 import ontology.GOType;
+import ontology.GeneOntology;
 
 public class CoSim implements TermSimilarityMetric, GeneSimilarityMetric, GeneSet
 {
-	HashMap<String, Integer> count1 = new HashMap<String, Integer>();
-	HashMap<String, Integer> count2 = new HashMap<String, Integer>();
-	
+	private final GeneOntology go;
+	private final GOType type;
+
+	public CoSim(GeneOntology go, GOType type)
+	{
+		this.go = go;
+		this.type = type;
+	}
+
 	public double getTermSimilarity(String term1, String term2)
 	{
 				if(term1.equals(term2))
 			return 1;
+		else
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
+
+	public double getTermSimilarity(int term1, int term2)
+	{
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1;
 		else
 		{
-			double intersection = 0;
-			double union = 0;
-			
-			if (Main.getGO().getCommonAncestors(term1,term2).isEmpty())
+			if (go.countCommonAncestors(term1,term2) == 0)
 				return 0.0;
-			for (String i: Main.getGO().getCommonAncestors(term1,term2))
-				intersection += Math.pow(Main.getGO().getInfoContent(i), 2.0);
-			for (String i: Main.getGO().getCombinedAncestors(term1,term2))
-				union += Math.pow(Main.getGO().getInfoContent(i), 2.0);
+			double intersection = go.getCommonAncestorsSquaredIC(term1,term2);
+			double union = go.getCombinedAncestorsSquaredIC(term1,term2);
 		
 			return intersection / union;
 		}
@@ -38,25 +49,24 @@ public class CoSim implements TermSimilarityMetric, GeneSimilarityMetric, GeneSe
 			return 1;
 		else
 		{
-			Set<String> set1;
-			Set<String> set2;
-			GOType t = Main.getType();
-			if(t == null)
+			Set<Integer> set1;
+			Set<Integer> set2;
+			if(type == null)
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1);
-				set2 = Main.getGO().getAnnotationsGene(gene2);
+				set1 = go.getAnnotationView(gene1);
+				set2 = go.getAnnotationView(gene2);
 			}
 			else
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1,t);
-				set2 = Main.getGO().getAnnotationsGene(gene2,t);
+				set1 = go.getAnnotationView(gene1,type);
+				set2 = go.getAnnotationView(gene2,type);
 			}
 			double intersection = 0.0;
 			double union = 0.0;
 
-			for (String i: set1)
+			for (int i: set1)
 			{
-				double IC = Math.pow(Main.getGO().getInfoContent(i), 2.0);
+				double IC = Math.pow(go.getInfoContent(i), 2.0);
 				
 				if(set2.contains(i))
 					intersection += IC;
@@ -65,9 +75,9 @@ public class CoSim implements TermSimilarityMetric, GeneSimilarityMetric, GeneSe
 					union += IC;
 			}
 
-			for (String i: set2)
+			for (int i: set2)
 			{
-				union += Math.pow(Main.getGO().getInfoContent(i), 2.0);
+				union += Math.pow(go.getInfoContent(i), 2.0);
 			}
 
 			return intersection / union;
@@ -76,19 +86,19 @@ public class CoSim implements TermSimilarityMetric, GeneSimilarityMetric, GeneSe
 	
 	public double getSetSimilarity(Vector<String> geneSet1, Vector<String> geneSet2)
 	{
-		HashMap<String, Integer> count1 = Main.getGO().termCountMap(geneSet1, Main.getType());
+		HashMap<String, Integer> count1 = go.termCountMap(geneSet1, type);
 		
 		if(geneSet1.equals(geneSet2))
 			return 1.0;
 		
-		HashMap<String, Integer> count2 = Main.getGO().termCountMap(geneSet2, Main.getType());
+		HashMap<String, Integer> count2 = go.termCountMap(geneSet2, type);
 		
 		double intersection = 0.0;
 		double union = 0.0;
 		
 		for (String s: count1.keySet())
 		{
-			double IC = Main.getGO().getInfoContent(s);
+			double IC = go.getInfoContent(s);
 			if (count2.containsKey(s))
 			{
 				intersection += Math.pow(Math.min(count1.get(s),count2.get(s))* IC, 2.0);
@@ -99,7 +109,7 @@ public class CoSim implements TermSimilarityMetric, GeneSimilarityMetric, GeneSe
 		}
 		for (String s: count2.keySet())
 		{
-			union += Math.pow(count2.get(s)* Main.getGO().getInfoContent(s),2.0);
+			union += Math.pow(count2.get(s)* go.getInfoContent(s),2.0);
 		}
 		return intersection / union;
 	}
@@ -1,19 +1,36 @@
 package metrics;
 
-import main.Main;
+import ontology.GeneOntology;
 
 public class Lin implements TermSimilarityMetric 
 {
+	private final GeneOntology go;
+
+	public Lin(GeneOntology go)
+	{
+		this.go = go;
+	}
+
 	public double getTermSimilarity(String term1, String term2)
 	{
 		if(term1.equals(term2))
 			return 1.0;
+		else
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
+
+	public double getTermSimilarity(int term1, int term2)
+	{
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1.0;
 
 		else 
 		{
-			double ic1 = Main.getGO().getInfoContent(term1);
-			double ic2 = Main.getGO().getInfoContent(term2);
-			double mica = Main.getGO().getInfoContent(Main.getGO().getMICA(term1,term2));
+			double ic1 = go.getInfoContent(term1);
+			double ic2 = go.getInfoContent(term2);
+			double mica = go.getInfoContent(go.getMICA(term1,term2));
 			
 			if (ic1 == 0 && ic2 == 0 && mica == 0)
 				return 0.0;
@@ -2,15 +2,19 @@ package metrics;
 
 import java.util.Set;
 
-import main.Main;
 import ontology.GOType;
+import ontology.GeneOntology;
 
 public class Maximum implements GeneSimilarityMetric
 {
-	private TermSimilarityMetric measure;
+	private final GeneOntology go;
+	private final GOType type;
+	private final TermSimilarityMetric measure;
 
-	public Maximum(TermSimilarityMetric measure)
+	public Maximum(GeneOntology go, GOType type, TermSimilarityMetric measure)
 	{
+		this.go = go;
+		this.type = type;
 		this.measure = measure;
 	}
 
@@ -21,23 +25,22 @@ public class Maximum implements GeneSimilarityMetric
 		else
 		{
 			double max= 0.0;
-			Set<String> set1;
-			Set<String> set2;
-			GOType t = Main.getType();
-			if(t == null)
+			Set<Integer> set1;
+			Set<Integer> set2;
+			if(type == null)
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1);
-				set2 = Main.getGO().getAnnotationsGene(gene2);
+				set1 = go.getAnnotationView(gene1);
+				set2 = go.getAnnotationView(gene2);
 			}
 			else
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1,t);
-				set2 = Main.getGO().getAnnotationsGene(gene2,t);
+				set1 = go.getAnnotationView(gene1,type);
+				set2 = go.getAnnotationView(gene2,type);
 			}
 
-			for (String t1: set1)
+			for (int t1: set1)
 			{				
-				for (String t2:  set2)
+				for (int t2:  set2)
 				{
 					double score = measure.getTermSimilarity(t1, t2);
 
@@ -1,59 +1,56 @@
 package metrics;
 
-import java.util.HashSet;
-
-import main.Main;
+import ontology.GeneOntology;
 
 public class PekarStaab implements TermSimilarityMetric 
 {
+	private final GeneOntology go;
+
+	public PekarStaab(GeneOntology go)
+	{
+		this.go = go;
+	}
 	
 	public double getTermSimilarity(String term1, String term2) 
 	{	
 		if(term1.equals(term2))
 			return 1.0;
+		else
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
+
+	public double getTermSimilarity(int term1, int term2) 
+	{	
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1.0;
 		
-		String root1 = Main.getGO().getRoot(Main.getGO().getType(term1));
-		String root2 = Main.getGO().getRoot(Main.getGO().getType(term2));
+		int root1 = go.getRootIndex(go.getType(term1));
+		int root2 = go.getRootIndex(go.getType(term2));
 		
-		boolean useAllRelations = Main.useAllRelations();
+		boolean useAllRelations = go.useAllRelations();
 		
-		if(!useAllRelations && !root1.equals(root2))
+		if(!useAllRelations && root1 != root2)
 			return 0.0;		
 		
-		String lowestCommonAncestor = null;
-		int lowestDistance = 100000;
-		
-		HashSet<String> commonAncestors = Main.getGO().getCommonAncestors(term1,term2);
+		//The common ancestor with the shortest path through it, and the
+		//depth, are looked up from the precomputed max distances
+		int lowestCommonAncestor = go.getLowestCommonAncestor(term1, term2);
 		
-		if (commonAncestors.isEmpty())
+		if (lowestCommonAncestor < 0)
 			return 0.0;
-	
-		if(commonAncestors.contains(term1))
-		{
-			lowestDistance = Main.getGO().getMaxDistance(term2, term1);
-			lowestCommonAncestor = term1;
-		}
-		else if(commonAncestors.contains(term2))
-		{
-			lowestDistance = Main.getGO().getMaxDistance(term1, term2);
-			lowestCommonAncestor = term2;
-		}
+		
+		int lowestDistance;
+		if(lowestCommonAncestor == term1)
+			lowestDistance = go.getMaxDistance(term2, term1);
+		else if(lowestCommonAncestor == term2)
+			lowestDistance = go.getMaxDistance(term1, term2);
 		else
-		{
-			for(String i: commonAncestors)
-			{
-				int distance = Main.getGO().getMaxDistance(term1,i) + Main.getGO().getMaxDistance(term2,i);
-
-				if (lowestDistance > distance)
-				{
-					lowestDistance = distance;
-					lowestCommonAncestor = i;
-				}
-			}
-		}
+			lowestDistance = go.getMaxDistance(term1, lowestCommonAncestor) +
+					go.getMaxDistance(term2, lowestCommonAncestor);
 		
-		String root = Main.getGO().getRoot(Main.getGO().getType(lowestCommonAncestor));
-		int rootDistance = Main.getGO().getMaxDistance(lowestCommonAncestor, root);
+		int rootDistance = go.getDepth(lowestCommonAncestor);
 		if(useAllRelations)
 			rootDistance++;
 		return  rootDistance * 1.0 / (rootDistance + lowestDistance);
@@ -1,15 +1,32 @@
 package metrics;
 
-import main.Main;
+import ontology.GeneOntology;
 
 public class Resnik implements TermSimilarityMetric
 {
+	private final GeneOntology go;
+
+	public Resnik(GeneOntology go)
+	{
+		this.go = go;
+	}
+
 	public double getTermSimilarity(String term1, String term2)
 	{
 		if(term1.equals(term2))
 			return 1.0;
 		else
-			return Main.getGO().getInfoContent(Main.getGO().getMICA(term1,term2));
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
+
+	public double getTermSimilarity(int term1, int term2)
+	{
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1.0;
+		else
+			return go.getInfoContent(go.getMICA(term1,term2));
 	}
 	
 }
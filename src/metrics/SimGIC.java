@@ -3,26 +3,41 @@ package metrics;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.Vector;
-import main.Main;
 import ontology.GOType;
+import ontology.GeneOntology;
 
 public class SimGIC implements TermSimilarityMetric, GeneSimilarityMetric, GeneSet
 {
+	private final GeneOntology go;
+	private final GOType type;
+
+	public SimGIC(GeneOntology go, GOType type)
+	{
+		this.go = go;
+		this.type = type;
+	}
+
 	public double getTermSimilarity(String term1, String term2)
 	{
 		if(term1.equals(term2))
 			return 1;
-
 		else
-		{
-			double intersectIC = 0;
-			double unionIC = 0;
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
 
-			for (String i: Main.getGO().getCommonAncestors(term1,term2))
-				intersectIC += Main.getGO().getInfoContent(i);
+	public double getTermSimilarity(int term1, int term2)
+	{
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1;
 
-			for (String i: Main.getGO().getCombinedAncestors(term1,term2))
-				unionIC += Main.getGO().getInfoContent(i);
+		else
+		{
+			double intersectIC = go.getCommonAncestorsIC(term1,term2);
+			double unionIC = go.getCombinedAncestorsIC(term1,term2);
+			if(unionIC == 0.0)
+				return 0.0;
 
 			return intersectIC*1.0 / unionIC;
 		}
@@ -34,26 +49,25 @@ public class SimGIC implements TermSimilarityMetric, GeneSimilarityMetric, GeneS
 			return 1;
 		else
 		{
-			Set<String> set1;
-			Set<String> set2;
-			GOType t = Main.getType();
-			if(t == null)
+			Set<Integer> set1;
+			Set<Integer> set2;
+			if(type == null)
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1);
-				set2 = Main.getGO().getAnnotationsGene(gene2);
+				set1 = go.getAnnotationView(gene1);
+				set2 = go.getAnnotationView(gene2);
 			}
 			else
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1,t);
-				set2 = Main.getGO().getAnnotationsGene(gene2,t);
+				set1 = go.getAnnotationView(gene1,type);
+				set2 = go.getAnnotationView(gene2,type);
 			}
 			double intersection = 0.0;
 			double union = 0.0;
 
 			//computes intersection IC
-			for (String i: set1)
+			for (int i: set1)
 			{	
-				double IC = Main.getGO().getInfoContent(i);
+				double IC = go.getInfoContent(i);
 				if(set2.contains(i))
 					intersection += IC;
 				else
@@ -62,9 +76,9 @@ public class SimGIC implements TermSimilarityMetric, GeneSimilarityMetric, GeneS
 			if(intersection == 0.0)
 				return 0.0;
 			//computes union IC
-			for (String i: set2)
+			for (int i: set2)
 			{
-				union += Main.getGO().getInfoContent(i); 
+				union += go.getInfoContent(i); 
 			}
 			return intersection / union;
 		}
@@ -72,12 +86,12 @@ public class SimGIC implements TermSimilarityMetric, GeneSimilarityMetric, GeneS
 
 	public double getSetSimilarity(Vector<String> geneSet1, Vector<String> geneSet2)
 	{
-		HashMap<String, Integer> count1 = Main.getGO().termCountMap(geneSet1, Main.getType());
+		HashMap<String, Integer> count1 = go.termCountMap(geneSet1, type);
 
 		if(geneSet1.equals(geneSet2))
 			return 1.0;
 	
-		HashMap<String, Integer> count2 = Main.getGO().termCountMap(geneSet2, Main.getType());
+		HashMap<String, Integer> count2 = go.termCountMap(geneSet2, type);
 		double intersection = 0.0;
 		double union = 0.0;
 
@@ -85,15 +99,15 @@ public class SimGIC implements TermSimilarityMetric, GeneSimilarityMetric, GeneS
 		{
 			if (count2.containsKey(s))
 			{
-				intersection += Math.min(count1.get(s),count2.get(s))* Main.getGO().getInfoContent(s);
-				union += Math.max(count1.get(s),count2.get(s))* Main.getGO().getInfoContent(s);
+				intersection += Math.min(count1.get(s),count2.get(s))* go.getInfoContent(s);
+				union += Math.max(count1.get(s),count2.get(s))* go.getInfoContent(s);
 				count2.remove(s);
 			}
-			else union += count1.get(s)* Main.getGO().getInfoContent(s);
+			else union += count1.get(s)* go.getInfoContent(s);
 		}
 		for (String s: count2.keySet())
 		{
-			union += count2.get(s)* Main.getGO().getInfoContent(s);
+			union += count2.get(s)* go.getInfoContent(s);
 		}
 		return intersection/union;
 	}
@@ -1,19 +1,39 @@
 package metrics;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Vector;
-import main.Main;
 import ontology.GOType;
+import ontology.GeneOntology;
 
 public class SimUI implements TermSimilarityMetric, GeneSimilarityMetric, GeneSet 
 {
+	private final GeneOntology go;
+	private final GOType type;
+
+	public SimUI(GeneOntology go, GOType type)
+	{
+		this.go = go;
+		this.type = type;
+	}
+
 	public double getTermSimilarity(String term1, String term2)
 	{
 		if(term1.equals(term2))
 			return 1;
 		else
-			return Main.getGO().getCommonAncestors(term1,term2).size() * 1.0 / Main.getGO().getCombinedAncestors(term1,term2).size();		
+			return getTermSimilarity(go.getIndex(term1), go.getIndex(term2));
+	}
+
+	public double getTermSimilarity(int term1, int term2)
+	{
+		if(term1 < 0 || term2 < 0)
+			return 0.0;
+		if(term1 == term2)
+			return 1;
+		int combined = go.countCombinedAncestors(term1,term2);
+		if(combined == 0)
+			return 0.0;
+		return go.countCommonAncestors(term1,term2) * 1.0 / combined;
 	}
 
 	public double getGeneSimilarity(String gene1, String gene2) 
@@ -22,34 +42,35 @@ public class SimUI implements TermSimilarityMetric, GeneSimilarityMetric, GeneSe
 			return 1;
 		else
 		{
-			Set<String> set1;
-			Set<String> set2;
-			GOType t = Main.getType();
-			if(t == null)
+			Set<Integer> set1;
+			Set<Integer> set2;
+			if(type == null)
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1);
-				set2 = Main.getGO().getAnnotationsGene(gene2);
+				set1 = go.getAnnotationView(gene1);
+				set2 = go.getAnnotationView(gene2);
 			}
 			else
 			{
-				set1 = Main.getGO().getAnnotationsGene(gene1,t);
-				set2 = Main.getGO().getAnnotationsGene(gene2,t);
+				set1 = go.getAnnotationView(gene1,type);
+				set2 = go.getAnnotationView(gene2,type);
 			}
-			HashSet<String> commonTerms	= new HashSet<String>(set1);
-			commonTerms.retainAll(set2);
+			int common = 0;
+			for(int i : set1)
+				if(set2.contains(i))
+					common++;
 
-			return commonTerms.size() * 1.0 / (set1.size() + set2.size() - commonTerms.size());
+			return common * 1.0 / (set1.size() + set2.size() - common);
 		}
 	}
 
 	public double getSetSimilarity(Vector<String> geneSet1, Vector<String> geneSet2)
 	{
-		HashMap<String, Integer> count1 = Main.getGO().termCountMap(geneSet1, Main.getType());
+		HashMap<String, Integer> count1 = go.termCountMap(geneSet1, type);
 
 		if(geneSet1.equals(geneSet2))
 			return 1.0;
 
-		HashMap<String, Integer> count2 = Main.getGO().termCountMap(geneSet2, Main.getType());
+		HashMap<String, Integer> count2 = go.termCountMap(geneSet2, type);
 		double intersection = 0.0;
 		double union = 0.0;
 
@@ -4,4 +4,6 @@ public interface TermSimilarityMetric
 {
 	public double getTermSimilarity(String term1, String term2);
 
+	public double getTermSimilarity(int term1, int term2);
+
 }
@@ -0,0 +1,135 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* The ancestors of each class of a GeneOntology (through the relationships in *
+* use), decomposed for dynamic programming passes over the DAG: the ancestors *
+* of a class are the union of the ancestors of its 'parents' (direct          *
+* ancestors whose ancestors are a subset of its own) and of its 'extra'       *
+* ancestors (itself and any ancestor not reached through the parents, such as *
+* through non transitive properties).                                         *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+
+package ontology;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import util.IntTable;
+
+class AncestorDecomposition
+{
+
+	//Attributes
+
+	//The classes sorted so that parents come before their children
+	private int[] order;
+	//The parents and extra ancestors of each class
+	private int[][] parents;
+	private int[][] extra;
+
+	//Constructors
+
+	/**
+	 * Decomposes the ancestors of the classes of a GeneOntology
+	 * @param go: the GeneOntology (with its ancestor indexes built)
+	 */
+	AncestorDecomposition(GeneOntology go)
+	{
+		IntTable ancestors = go.getAncestorIndex();
+		int n = go.termCount();
+		parents = new int[n][];
+		extra = new int[n][];
+		boolean[] covered = new boolean[n];
+		for(int x = 0; x < n; x++)
+		{
+			Set<Integer> direct = go.getDirectAncestors(x);
+			int[] p = new int[direct.size()];
+			int count = 0;
+			for(Integer d : direct)
+				if(isStrictSubset(ancestors, d, x))
+					p[count++] = d;
+			parents[x] = Arrays.copyOf(p, count);
+			for(int d : parents[x])
+				for(int k = 0; k < ancestors.size(d); k++)
+					covered[ancestors.get(d, k)] = true;
+			int[] e = new int[ancestors.size(x)];
+			count = 0;
+			for(int k = 0; k < e.length; k++)
+			{
+				int a = ancestors.get(x, k);
+				if(!covered[a])
+					e[count++] = a;
+			}
+			extra[x] = Arrays.copyOf(e, count);
+			for(int d : parents[x])
+				for(int k = 0; k < ancestors.size(d); k++)
+					covered[ancestors.get(d, k)] = false;
+		}
+		//A strict subset has fewer ancestors, so sorting the classes by
+		//number of ancestors puts parents before their children
+		Integer[] sorted = new Integer[n];
+		for(int i = 0; i < n; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, (i, j) -> Integer.compare(ancestors.size(i), ancestors.size(j)));
+		order = new int[n];
+		for(int i = 0; i < n; i++)
+			order[i] = sorted[i];
+	}
+
+	//Package Methods
+
+	/**
+	 * @param index: the index of the class
+	 * @return the extra ancestors of the class (including itself)
+	 */
+	int[] getExtra(int index)
+	{
+		return extra[index];
+	}
+
+	/**
+	 * @return the classes sorted so that parents come before their children
+	 * (by increasing number of ancestors, so classes with the same number
+	 * of ancestors aren't parents of one another)
+	 */
+	int[] getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * @param index: the index of the class
+	 * @return the parents of the class
+	 */
+	int[] getParents(int index)
+	{
+		return parents[index];
+	}
+
+	//Private Methods
+
+	//Checks whether the ancestors of a class are a strict subset of
+	//those of another class
+	private boolean isStrictSubset(IntTable ancestors, int sub, int sup)
+	{
+		if(sub == sup || ancestors.size(sub) >= ancestors.size(sup))
+			return false;
+		for(int k = 0; k < ancestors.size(sub); k++)
+			if(!ancestors.contains(sup, ancestors.get(sub, k)))
+				return false;
+		return true;
+	}
+}
@@ -9,13 +9,23 @@ package ontology;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.AxiomType;
@@ -31,54 +41,86 @@ import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
-import main.Main;
+import util.BitTable;
+import util.BlockTask;
+import util.IntTable;
+import util.IntTable3List;
+import util.StringArena;
 import util.Table2Set;
-import util.Table3List;
 
-public class GeneOntology
+public class GeneOntology implements Cloneable
 {
 
 	//Attributes
 
+	//The fields aren't final, since they are filled in by the loading steps
+	//and offHeap and withMICATable set them on a clone(), but none of them is
+	//written once the ontology (or the copy) is returned: the ontology is
+	//only effectively immutable, so it must be handed to other threads
+	//safely (e.g. through an executor or a final or volatile field)
+
 	//The OWL Ontology Manager and Data Factory
 	private OWLOntologyManager manager;
 	//The entity expansion limit property
 	private final String LIMIT = "entityExpansionLimit";
-
-	//The uris
-	protected HashSet<String> uriClasses;
-
-	//The local name <-> uri 
-	protected HashMap<String,String> nameClasses;
-	protected HashMap<String,String> classNames;
-	//The uri <-> label map of ontology classes
-	protected HashMap<String,String> classLabels;
-	protected HashMap<String,String> labelClasses;
+	//The 'has_part' object property, which is not used
+	static final String HAS_PART = "http://purl.obolibrary.org/obo/BFO_0000051";
+
+	//The term dictionary: each class gets a dense index at load time
+	//- uri -> index
+	private HashMap<String,Integer> uriIndexes;
+	//- index -> uri
+	private Vector<String> indexURIs;
+	//The local name <-> index
+	private HashMap<String,Integer> nameIndexes;
+	private Vector<String> indexNames;
+	//The index -> label map of ontology classes (labels are only needed for
+	//output, so they are kept as UTF-8 bytes and decoded on demand)
+	private StringArena termLabels;
 
 	//The uri -> ontology object properties
-	protected HashSet<String> uriProperties;
-	protected HashMap<String, String> propertyNames;
+	private HashSet<String> uriProperties;
+	private HashMap<String, String> propertyNames;
 
 	//Map of object properties that are transitive over other object properties
 	//(including themselves)
-	protected Table2Set<String, String> transitiveOver;
+	private Table2Set<String, String> transitiveOver;
 
 	//Map between ancestor classes and their descendants (with transitive closure)
-	private Table3List<String,String,Relationship> descendantMap;
+	private IntTable3List descendantMap;
 	//Map between descendant classes and their ancestors (with transitive closure)
-	private Table3List<String,String,Relationship> ancestorMap;
-
-	//The map of uri -> GOType indexes in the ontology
-	private HashMap<String,GOType> termTypes;
-	//The map of GOType -> root uri in the ontology
-	private HashMap<GOType,String> rootTerms;
+	private IntTable3List ancestorMap;
+	//Map between classes and their asserted ancestors (before the transitive
+	//closure), which is compared with that of other releases of the ontology
+	private IntTable3List assertedMap;
+	//The relationships in the maps are packed (see Relationship.pack) with
+	//the index of their property: each property gets a dense index as it is
+	//added to the ontology or to the maps ('is_a' is 0)
+	private HashMap<String,Integer> propertyIndexes;
+	private Vector<String> indexProperties;
+
+	//The GOType of each class, by index
+	private GOType[] termTypes;
+	//The index of the root class of each GOType, by GOType ordinal
+	private int[] rootTerms;
 
 	private HashSet<String> deprecated;
-	private HashMap<String,String> alternatives;
-
-	//The annotation map of gene accs <-> GO terms
-	private Table2Set<String,String> geneTerms;
-	private Table2Set<String,String> termGenes;
+	//The map of alternative local names -> index
+	private HashMap<String,Integer> alternatives;
+	//The local names of the classes left out of a sub-ontology (until the
+	//annotations are read)
+	private HashSet<String> droppedNames;
+
+	//The gene dictionary: each gene product gets a dense index as its
+	//annotations are read
+	private HashMap<String,Integer> geneIndexes;
+	private Vector<String> indexGenes;
+	//The annotation map of gene indexes <-> GO term indexes
+	private IntTable geneTerms;
+	private IntTable termGenes;
+	//The annotations of each gene product partitioned by GOType: row
+	//gene * types + ordinal lists the classes of that GOType
+	private IntTable typedGeneTerms;
 
 	//The map of gene synonyms (for GAF file)
 	private HashMap<String,String> geneSynonyms;
@@ -86,8 +128,45 @@ public class GeneOntology
 	private boolean useAllRelations;
 	private boolean structural;
 
-	//The map of uri -> IC in the ontology
-	private HashMap<String,Double> termICs;
+	//The ancestors and descendants of each class, by index, through 'is_a'
+	//relationships only and through all relationships
+	private IntTable isaAncestors;
+	private IntTable isaDescendants;
+	private IntTable allAncestors;
+	private IntTable allDescendants;
+	//The ancestor bit sets of each class, by index, through 'is_a' relationships
+	//only and through all relationships (the latter only if useAllRelations)
+	private BitTable isaAncestorBits;
+	private BitTable allAncestorBits;
+	//The max distance between each class and each of its ancestors, in the
+	//order of the ancestor indexes, through 'is_a' relationships only and
+	//through all relationships (the latter only if useAllRelations)
+	private int[][] isaDistances;
+	private int[][] allDistances;
+	//The max distance between each class and the root of its GOType through
+	//the relationships in use (or -1 if the root isn't its ancestor)
+	private int[] termDepths;
+
+	//The IC and squared IC of each class, by index (computed once the
+	//annotations are extended, and read-only afterwards)
+	private double[] termICs;
+	private double[] squaredICs;
+	//The rank of each class by decreasing IC (then increasing number of
+	//annotations and index) and the class with each rank
+	private int[] icRanks;
+	private int[] rankedTerms;
+	//The ancestors of each class through the relationships in use, as ranks,
+	//so that the first common ancestor of two classes is their MICA
+	private IntTable rankedAncestors;
+	//The precomputed MICA of pairs of annotated classes (optional)
+	private MICATable micaTable;
+
+	//The time taken by the transitive closure, in milliseconds
+	private long closureTime;
+	//The number of classes whose closure was reused from a previous release
+	private int reusedClosures;
+	//The pool in which the ontology is built (null if sequential)
+	private ForkJoinPool pool;
 
 
 	//Constructors
@@ -98,72 +177,266 @@ public class GeneOntology
 	private GeneOntology()
 	{
 		//Initialize the data structures
-		uriClasses = new HashSet<String>();
-		nameClasses = new HashMap<String,String>();
-		classNames = new HashMap<String,String>();
-		classLabels = new HashMap<String,String>();
-		labelClasses = new HashMap<String,String>();
+		uriIndexes = new HashMap<String,Integer>();
+		indexURIs = new Vector<String>();
+		nameIndexes = new HashMap<String,Integer>();
+		indexNames = new Vector<String>();
+		termLabels = new StringArena();
 		uriProperties = new HashSet<String>();
 		propertyNames = new HashMap<String,String>();
 		transitiveOver = new Table2Set<String,String>();
-		descendantMap = new Table3List<String,String,Relationship>();
-		ancestorMap = new Table3List<String,String,Relationship>();
-		termTypes = new HashMap<String,GOType>();
-		rootTerms = new HashMap<GOType,String>();
+		descendantMap = new IntTable3List(0);
+		ancestorMap = new IntTable3List(0);
+		assertedMap = new IntTable3List(0);
+		propertyIndexes = new HashMap<String,Integer>();
+		indexProperties = new Vector<String>();
+		indexProperties.add(null);
+		termTypes = new GOType[0];
+		rootTerms = new int[GOType.values().length];
+		Arrays.fill(rootTerms, -1);
 		deprecated = new HashSet<String>();
-		alternatives = new HashMap<String,String>();
-		geneTerms = new Table2Set<String,String>();
-		termGenes = new Table2Set<String,String>();
+		alternatives = new HashMap<String,Integer>();
+		geneIndexes = new HashMap<String,Integer>();
+		indexGenes = new Vector<String>();
+		geneTerms = new IntTable(new int[0][]);
+		termGenes = new IntTable(new int[0][]);
+		typedGeneTerms = new IntTable(new int[0][]);
 		geneSynonyms = new HashMap<String,String>();
-		termICs = new HashMap<String,Double>();
-
-		//Increase the entity expansion limit to allow large ontologies
-		System.setProperty(LIMIT, "1000000");
-		//Get an Ontology Manager
-		manager = OWLManager.createOWLOntologyManager();
+		termICs = new double[0];
+		squaredICs = new double[0];
 	}
 
 	/**
-	 * Constructs; an Ontology from file 
+	 * Constructs; an Ontology from file
 	 * @param path: the path to the input Ontology file
 	 * @param annotFile: gene product annotation file
-	 * @throws OWLOntologyCreationException 
+	 * @throws OWLOntologyCreationException
 	 */
 	public GeneOntology(String path, String annotFile, boolean useAllRelations, boolean structural) throws OWLOntologyCreationException, IOException
 	{
-		this((new File(path)).toURI(), annotFile, useAllRelations, structural);
+		this(path, annotFile, useAllRelations, structural, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an Ontology from file, using the given number of threads
+	 * for the transitive closure and the extension of the annotations
+	 * @param path: the path to the input Ontology file
+	 * @param annotFile: gene product annotation file
+	 * @param threads: the number of threads to use
+	 * @throws OWLOntologyCreationException
+	 */
+	public GeneOntology(String path, String annotFile, boolean useAllRelations, boolean structural, int threads) throws OWLOntologyCreationException, IOException
+	{
+		this(path, annotFile, useAllRelations, structural, null, threads);
+	}
+
+	/**
+	 * Constructs the sub-ontology of a GOType from file, using the given
+	 * number of threads for the transitive closure and the extension of the
+	 * annotations (see selectSubOntology)
+	 * @param path: the path to the input Ontology file
+	 * @param annotFile: gene product annotation file
+	 * @param type: the GOType of the sub-ontology, or null to load the whole ontology
+	 * @param threads: the number of threads to use
+	 * @throws OWLOntologyCreationException
+	 */
+	public GeneOntology(String path, String annotFile, boolean useAllRelations, boolean structural, GOType type, int threads) throws OWLOntologyCreationException, IOException
+	{
+		this((new File(path)).toURI(), annotFile, useAllRelations, structural, type, threads);
 	}
 
 	/**
-	 * Constructs an Ontology from an URI  
+	 * Constructs an Ontology from an URI (OBO files are read natively,
+	 * other formats through the OWL API)
 	 * @param uri: the URI of the input Ontology
 	 * @param annotFile: gene product annotation file
-	 * @throws OWLOntologyCreationException 
+	 * @throws OWLOntologyCreationException
 	 */
 	public GeneOntology(URI uri, String annotFile, boolean useAllRelations, boolean structural) throws OWLOntologyCreationException, IOException
+	{
+		this(uri, annotFile, useAllRelations, structural, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Constructs an Ontology from an URI, using the given number of threads
+	 * for the transitive closure and the extension of the annotations (the
+	 * result is the same regardless of the number of threads)
+	 * @param uri: the URI of the input Ontology
+	 * @param annotFile: gene product annotation file
+	 * @param threads: the number of threads to use
+	 * @throws OWLOntologyCreationException
+	 */
+	public GeneOntology(URI uri, String annotFile, boolean useAllRelations, boolean structural, int threads) throws OWLOntologyCreationException, IOException
+	{
+		this(uri, annotFile, useAllRelations, structural, null, threads);
+	}
+
+	/**
+	 * Constructs the sub-ontology of a GOType from an URI, using the given
+	 * number of threads for the transitive closure and the extension of the
+	 * annotations: only the classes that affect the classes of the GOType
+	 * are kept, so their annotations, ICs and similarities are the same as
+	 * in the whole ontology (see selectSubOntology)
+	 * @param uri: the URI of the input Ontology
+	 * @param annotFile: gene product annotation file
+	 * @param type: the GOType of the sub-ontology, or null to load the whole ontology
+	 * @param threads: the number of threads to use
+	 * @throws OWLOntologyCreationException
+	 */
+	public GeneOntology(URI uri, String annotFile, boolean useAllRelations, boolean structural, GOType type, int threads) throws OWLOntologyCreationException, IOException
+	{
+		this(uri, annotFile, useAllRelations, structural, type, threads, null);
+	}
+
+	//Constructs an Ontology from an URI, reusing the transitive closure of
+	//the classes whose relationships didn't change since a previous release
+	//(see findReusableClosures)
+	private GeneOntology(URI uri, String annotFile, boolean useAllRelations, boolean structural, GOType type, int threads,
+			GeneOntology previous) throws OWLOntologyCreationException, IOException
 	{
 		this();
-		OWLOntology o;
-		//Check if the URI is local
-		if(uri.toString().startsWith("file:"))
+		this.useAllRelations = useAllRelations;
+		this.structural = structural;
+		if(threads > 1)
+			pool = new ForkJoinPool(threads);
+		//The annotation file is read in the pool while the ontology is read,
+		//and its annotations are resolved once the term dictionary is ready
+		ForkJoinTask<AnnotationBuffer> annotations = null;
+		if(pool != null)
+			annotations = pool.submit(() -> readAnnotationFile(annotFile));
+		try
 		{
-			File f = new File(uri);
-			o = manager.loadOntologyFromOntologyDocument(f);
+			if(isOBO(uri))
+				readOBO(uri);
+			else
+				readOWL(uri);
+			if(type != null)
+				selectSubOntology(type);
+			termLabels.trim();
+			//Extend the relationship map
+			transitiveClosure(previous);
+			//Index the ancestors of each class
+			buildAncestorIndexes();
+			if(annotations == null)
+				addAnnotations(readAnnotationFile(annotFile));
+			else
+				addAnnotations(getAnnotations(annotations));
+			extendAnnotations();
+			partitionAnnotations();
+			//Compute the IC of each class and rank the ancestors by it
+			computeInfoContents();
+			buildRankedAncestors();
 		}
-		else
+		finally
 		{
-			IRI i = IRI.create(uri);
-			o = manager.loadOntology(i);
+			if(pool != null)
+				pool.shutdown();
+			pool = null;
 		}
-		init(o);
-		//Close the OntModel
-		manager.removeOntology(o);
-		//Reset the entity expansion limit
-		System.clearProperty(LIMIT);
-		this.useAllRelations = useAllRelations;
-		this.structural = structural;
-		readAnnotationFile(annotFile);
-		extendAnnotations();
+	}
+
+	/**
+	 * Constructs an Ontology from a snapshot (see write)
+	 * @param s: the snapshot to read, positioned after its header
+	 * @throws IOException
+	 */
+	GeneOntology(OntologySnapshot s) throws IOException
+	{
+		this();
+		useAllRelations = s.readBoolean();
+		structural = s.readBoolean();
+		//The term dictionary
+		int n = s.readInt();
+		GOType[] types = GOType.values();
+		for(int i = 0; i < n; i++)
+		{
+			String uri = s.readString();
+			String name = s.readString();
+			String label = s.readString();
+			int type = s.readInt();
+			addTerm(uri, name, label, type < 0 ? null : types[type]);
+		}
+		termTypes = Arrays.copyOf(termTypes, n);
+		termLabels.trim();
+		for(int i = 0; i < rootTerms.length; i++)
+			rootTerms[i] = s.readInt();
+		int count = s.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			String alt = s.readString();
+			addAlternative(alt, s.readInt());
+		}
+		count = s.readInt();
+		for(int i = 0; i < count; i++)
+			addDeprecated(s.readString());
+		//The object properties
+		String[] props = new String[s.readInt()];
+		for(int i = 0; i < props.length; i++)
+		{
+			props[i] = s.readString().intern();
+			addProperty(props[i], s.readString(), false);
+		}
+		//The properties get the indexes they had in the ontology that was written
+		for(String p : props)
+			addPropertyIndex(p);
+		count = s.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			String p1 = props[s.readInt()];
+			transitiveOver.add(p1, props[s.readInt()]);
+		}
+		//The transitive closure
+		count = s.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			int child = s.readInt();
+			int parent = s.readInt();
+			int distance = s.readInt();
+			int prop = s.readInt();
+			ancestorMap.add(child, parent, Relationship.pack(distance, prop+1));
+		}
+		ancestorMap.freeze();
+		descendantMap = ancestorMap.transpose(n);
+		//The asserted relationships
+		count = s.readInt();
+		assertedMap = new IntTable3List(n);
+		for(int i = 0; i < count; i++)
+		{
+			int child = s.readInt();
+			int parent = s.readInt();
+			int distance = s.readInt();
+			int prop = s.readInt();
+			assertedMap.add(child, parent, Relationship.pack(distance, prop+1));
+		}
+		assertedMap.freeze();
+		buildAncestorIndexes();
+		//The propagated annotations
+		int[][] annotations = new int[s.readInt()][];
+		for(int i = 0; i < annotations.length; i++)
+		{
+			addGene(s.readString());
+			annotations[i] = new int[s.readInt()];
+			for(int j = 0; j < annotations[i].length; j++)
+				annotations[i][j] = s.readInt();
+		}
+		geneTerms = new IntTable(annotations);
+		termGenes = geneTerms.transpose(n);
+		partitionAnnotations();
+		count = s.readInt();
+		for(int i = 0; i < count; i++)
+		{
+			String synonym = s.readString();
+			geneSynonyms.put(synonym, s.readString());
+		}
+		//The IC table
+		termICs = new double[n];
+		squaredICs = new double[n];
+		for(int i = 0; i < n; i++)
+		{
+			termICs[i] = s.readDouble();
+			squaredICs[i] = termICs[i] * termICs[i];
+		}
+		buildRankedAncestors();
 	}
 
 
@@ -176,7 +449,7 @@ public class GeneOntology
 	 */
 	public boolean contains(String gene)
 	{
-		return geneTerms.contains(gene) || geneSynonyms.containsKey(gene);
+		return geneIndexes.containsKey(gene) || geneSynonyms.containsKey(gene);
 	}
 
 	/**
@@ -185,7 +458,7 @@ public class GeneOntology
 	 */
 	public boolean containsName(String name)
 	{
-		return nameClasses.containsKey(name) || alternatives.containsKey(name);
+		return nameIndexes.containsKey(name) || alternatives.containsKey(name);
 	}
 
 	/**
@@ -195,31 +468,101 @@ public class GeneOntology
 	 */
 	public boolean containsRelationship(String child, String parent)
 	{
-		return descendantMap.contains(parent,child);
+		return containsRelationship(getIndex(child), getIndex(parent));
+	}
+
+	/**
+	 * @param child: the index of the child class
+	 * @param parent: the index of the parent class
+	 * @return whether the ontology contains a relationship between child and parent
+	 */
+	public boolean containsRelationship(int child, int parent)
+	{
+		return child > -1 && parent > -1 && allAncestors.contains(child, parent);
 	}
 
 	/**
 	 * @param child: the uri of the child class
 	 * @param parent: the uri of the parent class
 	 * @return whether the ontology contains an 'is_a' relationship between child and parent
-	 */	
+	 */
 	public boolean containsSubClass(String child, String parent)
 	{
-		if(!descendantMap.contains(parent,child))
-			return false;
-		Vector<Relationship> rels = descendantMap.get(parent,child);
-		for(Relationship r : rels)
-			if(r.getProperty() == null)
-				return true;
-		return false;
+		return containsSubClass(getIndex(child), getIndex(parent));
+	}
+
+	/**
+	 * @param child: the index of the child class
+	 * @param parent: the index of the parent class
+	 * @return whether the ontology contains an 'is_a' relationship between child and parent
+	 */
+	public boolean containsSubClass(int child, int parent)
+	{
+		return child > -1 && parent > -1 && isaAncestors.contains(child, parent);
 	}
 
 	public int countAnnotations(String go)
 	{
-		if(termGenes.contains(go))
-			return termGenes.get(go).size();
-		else
+		return countAnnotations(getIndex(go));
+	}
+
+	/**
+	 * @param go: the index of the GO term
+	 * @return the number of gene products annotated with the GO term
+	 */
+	public int countAnnotations(int go)
+	{
+		if(go < 0 || go >= termGenes.size())
+			return 0;
+		return termGenes.size(go);
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the number of combined ancestors of the input classes
+	 */
+	public int countCombinedAncestors(int index1, int index2)
+	{
+		if(index1 < 0 || index2 < 0)
+			return 0;
+		return getAncestorBits().unionCount(index1, index2);
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the number of common ancestors of the input classes
+	 */
+	public int countCommonAncestors(int index1, int index2)
+	{
+		if(index1 < 0 || index2 < 0)
+			return 0;
+		return getAncestorBits().intersectionCount(index1, index2);
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the number of descendants of the class through all
+	 * relationships (including itself)
+	 */
+	public int countDescendants(int index)
+	{
+		if(index < 0)
+			return 0;
+		return allDescendants.size(index);
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the number of subclasses of the class, direct or indirect
+	 * (including itself)
+	 */
+	public int countSubClasses(int index)
+	{
+		if(index < 0)
 			return 0;
+		return isaDescendants.size(index);
 	}
 
 	/**
@@ -228,10 +571,16 @@ public class GeneOntology
 	 */
 	public Set<String> getAncestors(String uri)
 	{
-		if(ancestorMap.contains(uri))
-			return ancestorMap.keySet(uri);
-		else
-			return new HashSet<String>();
+		return getURIs(getAncestors(getIndex(uri)));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the list of ancestors of the given class
+	 */
+	public Set<Integer> getAncestors(int index)
+	{
+		return getSet(allAncestors, index);
 	}
 
 	/**
@@ -241,13 +590,20 @@ public class GeneOntology
 	 */
 	public Set<String> getAncestors(String uri, int distance)
 	{
-		HashSet<String> asc = new HashSet<String>();
-		if(!ancestorMap.contains(uri))
-			return asc;
-		for(String i : ancestorMap.keySet(uri))
-			for(Relationship r : ancestorMap.get(uri, i))
-				if(r.getDistance() == distance)
-					asc.add(i);
+		return getURIs(getAncestors(getIndex(uri), distance));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @return the list of ancestors at the given distance from the input class
+	 */
+	public Set<Integer> getAncestors(int index, int distance)
+	{
+		HashSet<Integer> asc = new HashSet<Integer>();
+		for(int k = 0; k < ancestorMap.size(index); k++)
+			if(Relationship.getDistance(ancestorMap.getValue(index, k)) == distance)
+				asc.add(ancestorMap.getKey(index, k));
 		return asc;
 	}
 
@@ -260,13 +616,25 @@ public class GeneOntology
 	 */
 	public Set<String> getAncestors(String uri, int distance, String prop)
 	{
-		HashSet<String> asc = new HashSet<String>();
-		if(!ancestorMap.contains(uri))
+		return getURIs(getAncestors(getIndex(uri), distance, prop));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of ancestors of the input class that are at the given
+	 * distance and with the given property
+	 */
+	public Set<Integer> getAncestors(int index, int distance, String prop)
+	{
+		HashSet<Integer> asc = new HashSet<Integer>();
+		int p = getPropertyIndex(prop);
+		if(p < 0)
 			return asc;
-		for(String i : ancestorMap.keySet(uri))
-			for(Relationship r : ancestorMap.get(uri, i))
-				if(r.getDistance() == distance && r.getProperty() == prop)
-					asc.add(i);
+		for(int k = 0; k < ancestorMap.size(index); k++)
+			if(ancestorMap.getValue(index, k) == Relationship.pack(distance, p))
+				asc.add(ancestorMap.getKey(index, k));
 		return asc;
 	}
 
@@ -277,13 +645,25 @@ public class GeneOntology
 	 */
 	public Set<String> getAncestorsProperty(String uri, String prop)
 	{
-		HashSet<String> asc = new HashSet<String>();
-		if(!ancestorMap.contains(uri))
+		return getURIs(getAncestorsProperty(getIndex(uri), prop));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of ancestors with the given property
+	 */
+	public Set<Integer> getAncestorsProperty(int index, String prop)
+	{
+		if(prop == null)
+			return getSet(isaAncestors, index);
+		HashSet<Integer> asc = new HashSet<Integer>();
+		int p = getPropertyIndex(prop);
+		if(p < 0)
 			return asc;
-		for(String i : ancestorMap.keySet(uri))
-			for(Relationship r : ancestorMap.get(uri, i))
-				if(r.getProperty() == prop)
-					asc.add(i);
+		for(int k = 0; k < ancestorMap.size(index); k++)
+			if(Relationship.getProperty(ancestorMap.getValue(index, k)) == p)
+				asc.add(ancestorMap.getKey(index, k));
 		return asc;
 	}
 
@@ -293,10 +673,19 @@ public class GeneOntology
 	 */
 	public Set<String> getAnnotationsGO(String go)
 	{
-		if(termGenes.contains(go))
-			return new HashSet<String>(termGenes.get(go));
-		else
-			return new HashSet<String>();		
+		return getAnnotationsGO(getIndex(go));
+	}
+
+	/**
+	 * @param go: the index of the GO term for which to retrieve annotations
+	 * @return the set of gene products annotated with the given GO term
+	 */
+	public Set<String> getAnnotationsGO(int go)
+	{
+		HashSet<String> genes = new HashSet<String>();
+		for(int k = 0; k < countAnnotations(go); k++)
+			genes.add(indexGenes.get(termGenes.get(go, k)));
+		return genes;
 	}
 
 	/**
@@ -305,12 +694,7 @@ public class GeneOntology
 	 */
 	public Set<String> getAnnotationsGene(String gene)
 	{
-		if(geneTerms.contains(gene))
-			return new HashSet<String>(geneTerms.get(gene));
-		else if(geneSynonyms.containsKey(gene) && geneTerms.contains(geneSynonyms.get(gene)))
-			return new HashSet<String>(geneTerms.get(geneSynonyms.get(gene)));
-		else
-			return new HashSet<String>();		
+		return getURIs(getAnnotationIndexes(gene));
 	}
 
 	/**
@@ -320,18 +704,59 @@ public class GeneOntology
 	 */
 	public Set<String> getAnnotationsGene(String gene, GOType t)
 	{
-		Set<String> results;
-		if(geneTerms.contains(gene))
-			results = geneTerms.get(gene);
-		else if(geneSynonyms.containsKey(gene) && geneTerms.contains(geneSynonyms.get(gene)))
-			results = geneTerms.get(geneSynonyms.get(gene));
-		else
-			results = new HashSet<String>();
-		HashSet<String> finalResults = new HashSet<String>();
-		for(String s : results)
-			if(termTypes.get(s).equals(t))
-				finalResults.add(s);
-		return finalResults;
+		return getURIs(getAnnotationIndexes(gene, t));
+	}
+
+	/**
+	 * @param gene: the identifier of the gene product for which to retrieve annotations
+	 * @return a copy of the set of indexes of the GO terms annotated to the
+	 * gene product (see getAnnotationView)
+	 */
+	public Set<Integer> getAnnotationIndexes(String gene)
+	{
+		int g = getGeneIndex(gene);
+		if(g < 0)
+			return new HashSet<Integer>();
+		return new HashSet<Integer>(geneTerms.getSet(g));
+	}
+
+	/**
+	 * @param gene: the identifier of the gene product for which to retrieve annotations
+	 * @param t: the GO type of terms to return
+	 * @return a copy of the set of indexes of the GO terms of the given type
+	 * annotated to the gene product (see getAnnotationView)
+	 */
+	public Set<Integer> getAnnotationIndexes(String gene, GOType t)
+	{
+		return new HashSet<Integer>(getAnnotationView(gene, t));
+	}
+
+	/**
+	 * @param gene: the identifier of the gene product for which to retrieve annotations
+	 * @return a read-only view of the set of indexes of the GO terms annotated
+	 * to the gene product (which isn't copied, so it can be used in loops over
+	 * gene pairs without allocating new sets)
+	 */
+	public Set<Integer> getAnnotationView(String gene)
+	{
+		int g = getGeneIndex(gene);
+		if(g < 0)
+			return Collections.emptySet();
+		return geneTerms.getSet(g);
+	}
+
+	/**
+	 * @param gene: the identifier of the gene product for which to retrieve annotations
+	 * @param t: the GO type of terms to return
+	 * @return a read-only view of the set of indexes of the GO terms of the
+	 * given type annotated to the gene product
+	 */
+	public Set<Integer> getAnnotationView(String gene, GOType t)
+	{
+		int g = getGeneIndex(gene);
+		if(g < 0)
+			return Collections.emptySet();
+		return typedGeneTerms.getSet(g * GOType.values().length + t.ordinal());
 	}
 
 	/**
@@ -339,9 +764,11 @@ public class GeneOntology
 	 */
 	public Set<String> getChildren()
 	{
-		if(ancestorMap != null)
-			return ancestorMap.keySet();
-		return new HashSet<String>();
+		HashSet<String> children = new HashSet<String>();
+		for(int i = 0; i < ancestorMap.rowCount(); i++)
+			if(ancestorMap.contains(i))
+				children.add(indexURIs.get(i));
+		return children;
 	}
 
 	/**
@@ -353,170 +780,290 @@ public class GeneOntology
 		return getDescendants(uri,1);
 	}
 
-
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @return the list of combined ancestors of the input classes
+	 * @param index: the index of the class to search in the map
+	 * @return the list of direct children of the given class
 	 */
-	public HashSet<String> getCombinedAncestors(String uri1,String uri2)
+	public Set<Integer> getChildren(int index)
 	{
-		if(useAllRelations)
-		{
-			HashSet<String> commonAncestors = new HashSet<String>(getAncestors(uri1));
-			commonAncestors.addAll(getAncestors(uri2));
-			return commonAncestors;
-		}
-		else
-		{
-			HashSet<String> commonAncestors = new HashSet<String>(getSuperClasses(uri1,false));
-			commonAncestors.addAll(getSuperClasses(uri2,false));
-			return commonAncestors;
-		}
+		return getDescendants(index,1);
 	}
 
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @return the list of common ancestors of the input classes
+	 * @return the time taken by the transitive closure, in milliseconds
 	 */
-	public HashSet<String> getCommonAncestors(String uri1,String uri2)
+	public long getClosureTime()
 	{
-		if(useAllRelations)
-		{
-			HashSet<String> commonAncestors = new HashSet<String>(getAncestors(uri1));
-			commonAncestors.retainAll(getAncestors(uri2));
-			return commonAncestors;
-		}
-		else
-		{
-			HashSet<String> commonAncestors = new HashSet<String>(getSuperClasses(uri1,false));
-			commonAncestors.retainAll(getSuperClasses(uri2,false));
-			return commonAncestors;
-		}
+		return closureTime;
 	}
-	
+
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @return the list of descendants of the input class
+	 * @return the number of classes whose transitive closure was reused from
+	 * a previous release of the ontology, rather than computed (see
+	 * Builder.previous)
 	 */
-	public Set<String> getDescendants(String uri)
+	public int getReusedClosureCount()
 	{
-		if(descendantMap.contains(uri))
-			return descendantMap.keySet(uri);
-		return new HashSet<String>();
+		return reusedClosures;
 	}
 
 	/**
 	 * @param uri: the id of the class to search in the map
-	 * @param distance: the distance between the class and its ancestors
-	 * @return the list of descendants at the given distance from the input class
+	 * @return the list of combined ancestors of the input classes
 	 */
-	public Set<String> getDescendants(String uri, int distance)
+	public HashSet<String> getCombinedAncestors(String uri1,String uri2)
 	{
-		HashSet<String> desc = new HashSet<String>();
-		if(!descendantMap.contains(uri))
-			return desc;
-		for(String i : descendantMap.keySet(uri))
-			for(Relationship r : descendantMap.get(uri, i))
-				if(r.getDistance() == distance)
-					desc.add(i);
-		return desc;
+		return getURIs(getCombinedAncestors(getIndex(uri1),getIndex(uri2)));
 	}
 
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @param distance: the distance between the class and its ancestors
-	 * @param prop: the relationship property between the class and its ancestors
-	 * @return the list of descendants of the input class at the given distance
-	 * and with the given property
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the list of combined ancestors of the input classes
 	 */
-	public Set<String> getDescendants(String uri, int distance, String prop)
+	public HashSet<Integer> getCombinedAncestors(int index1, int index2)
 	{
-		HashSet<String> desc = new HashSet<String>();
-		if(!descendantMap.contains(uri))	
-			return desc;
-		for(String i : descendantMap.keySet(uri))
-			for(Relationship r : descendantMap.get(uri, i))
-				if(r.getDistance() == distance && r.getProperty() == prop)
-					desc.add(i);
-		return desc;
+		if(index1 < 0)
+			return new HashSet<Integer>(getSet(getAncestorIndex(), index2));
+		if(index2 < 0)
+			return new HashSet<Integer>(getSet(getAncestorIndex(), index1));
+		return toSet(getAncestorIndex().union(index1, index2));
 	}
 
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @param prop: the relationship property between the class and its ancestors
-	 * @return the list of descendants at the given distance from the input class
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the sum of the IC of the combined ancestors of the input classes
 	 */
-	public Set<String> getDescendantsProperty(String uri, String prop)
+	public double getCombinedAncestorsIC(int index1, int index2)
 	{
-		HashSet<String> desc = new HashSet<String>();
-		if(!descendantMap.contains(uri))
-			return desc;
-		for(String i : descendantMap.keySet(uri))
-			for(Relationship r : descendantMap.get(uri, i))
-				if(r.getProperty() == prop)
-					desc.add(i);
-		return desc;
+		if(index1 < 0 || index2 < 0)
+			return 0.0;
+		return getAncestorBits().unionSum(index1, index2, termICs);
 	}
 
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @return the list of equivalences of the given class
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the sum of the squared IC of the combined ancestors of the input classes
 	 */
-	public Set<String> getEquivalences(String uri)
+	public double getCombinedAncestorsSquaredIC(int index1, int index2)
 	{
-		return getDescendants(uri, 0);
+		if(index1 < 0 || index2 < 0)
+			return 0.0;
+		return getAncestorBits().unionSum(index1, index2, squaredICs);
 	}
 
 	/**
 	 * @param uri: the id of the class to search in the map
-	 * @return the list of classes equivalent to the given class
+	 * @return the list of common ancestors of the input classes
 	 */
-	public Set<String> getEquivalentClasses(String uri)
+	public HashSet<String> getCommonAncestors(String uri1,String uri2)
 	{
-		return getDescendants(uri,0,null);
+		return getURIs(getCommonAncestors(getIndex(uri1),getIndex(uri2)));
 	}
 
 	/**
-	 * @param uri: the id of the class to search in the map
-	 * @return the information content of the given uri
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the list of common ancestors of the input classes
 	 */
-	public double getInfoContent(String uri)
+	public HashSet<Integer> getCommonAncestors(int index1, int index2)
 	{
-		if (uri == null)
+		if(index1 < 0 || index2 < 0)
+			return new HashSet<Integer>();
+		return toSet(getAncestorIndex().intersection(index1, index2));
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the sum of the IC of the common ancestors of the input classes
+	 */
+	public double getCommonAncestorsIC(int index1, int index2)
+	{
+		if(index1 < 0 || index2 < 0)
 			return 0.0;
+		return getAncestorBits().intersectionSum(index1, index2, termICs);
+	}
 
-		if(termICs.containsKey(uri))
-			return termICs.get(uri);
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the sum of the squared IC of the common ancestors of the input classes
+	 */
+	public double getCommonAncestorsSquaredIC(int index1, int index2)
+	{
+		if(index1 < 0 || index2 < 0)
+			return 0.0;
+		return getAncestorBits().intersectionSum(index1, index2, squaredICs);
+	}
 
-		double score = 0.0;
-		String root = rootTerms.get(getType(uri));
+	/**
+	 * @param index: the index of the class
+	 * @return the max distance between the class and the root of its
+	 * GOType, or -1 if it has no root or is not in the ontology
+	 */
+	public int getDepth(int index)
+	{
+		if(index < 0)
+			return -1;
+		return termDepths[index];
+	}
 
-		if(root.equals(uri))
-		{
-			termICs.put(uri, score);
-			return score;
-		}
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @return the list of descendants of the input class
+	 */
+	public Set<String> getDescendants(String uri)
+	{
+		return getURIs(getDescendants(getIndex(uri)));
+	}
 
-		if(structural)
-		{
-			if (useAllRelations)
-			{	
-				score = 1-Math.log(1+getDescendants(uri).size())/
-						Math.log(1+getDescendants(root).size());
-			}
-			else
-			{
-				score = 1-Math.log(1+getSubClasses(uri,false).size())/
-						Math.log(1+getSubClasses(rootTerms.get(getType(uri)),false).size());
-			}			
-		}
-		else
-		{
-			score = 1-Math.log(Math.max(1, countAnnotations(uri)))/
-					Math.log(Math.max(1, countAnnotations(rootTerms.get(getType(uri)))));
-		}
-		termICs.put(uri, score);
-		return score;
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the list of descendants of the input class
+	 */
+	public Set<Integer> getDescendants(int index)
+	{
+		return getSet(allDescendants, index);
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @return the list of descendants at the given distance from the input class
+	 */
+	public Set<String> getDescendants(String uri, int distance)
+	{
+		return getURIs(getDescendants(getIndex(uri), distance));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @return the list of descendants at the given distance from the input class
+	 */
+	public Set<Integer> getDescendants(int index, int distance)
+	{
+		HashSet<Integer> desc = new HashSet<Integer>();
+		for(int k = 0; k < descendantMap.size(index); k++)
+			if(Relationship.getDistance(descendantMap.getValue(index, k)) == distance)
+				desc.add(descendantMap.getKey(index, k));
+		return desc;
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of descendants of the input class at the given distance
+	 * and with the given property
+	 */
+	public Set<String> getDescendants(String uri, int distance, String prop)
+	{
+		return getURIs(getDescendants(getIndex(uri), distance, prop));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param distance: the distance between the class and its ancestors
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of descendants of the input class at the given distance
+	 * and with the given property
+	 */
+	public Set<Integer> getDescendants(int index, int distance, String prop)
+	{
+		HashSet<Integer> desc = new HashSet<Integer>();
+		int p = getPropertyIndex(prop);
+		if(p < 0)
+			return desc;
+		for(int k = 0; k < descendantMap.size(index); k++)
+			if(descendantMap.getValue(index, k) == Relationship.pack(distance, p))
+				desc.add(descendantMap.getKey(index, k));
+		return desc;
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of descendants at the given distance from the input class
+	 */
+	public Set<String> getDescendantsProperty(String uri, String prop)
+	{
+		return getURIs(getDescendantsProperty(getIndex(uri), prop));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param prop: the relationship property between the class and its ancestors
+	 * @return the list of descendants with the given property
+	 */
+	public Set<Integer> getDescendantsProperty(int index, String prop)
+	{
+		if(prop == null)
+			return getSet(isaDescendants, index);
+		HashSet<Integer> desc = new HashSet<Integer>();
+		int p = getPropertyIndex(prop);
+		if(p < 0)
+			return desc;
+		for(int k = 0; k < descendantMap.size(index); k++)
+			if(Relationship.getProperty(descendantMap.getValue(index, k)) == p)
+				desc.add(descendantMap.getKey(index, k));
+		return desc;
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @return the list of equivalences of the given class
+	 */
+	public Set<String> getEquivalences(String uri)
+	{
+		return getDescendants(uri, 0);
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @return the list of classes equivalent to the given class
+	 */
+	public Set<String> getEquivalentClasses(String uri)
+	{
+		return getDescendants(uri,0,null);
+	}
+
+	/**
+	 * @param uri: the uri of the class to search in the dictionary
+	 * @return the index of the class with the given uri, or -1 if
+	 * it isn't listed in the ontology
+	 */
+	public int getIndex(String uri)
+	{
+		Integer index = uriIndexes.get(uri);
+		if(index == null)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * @param uri: the id of the class to search in the map
+	 * @return the information content of the given uri
+	 */
+	public double getInfoContent(String uri)
+	{
+		if (uri == null)
+			return 0.0;
+		return getInfoContent(getIndex(uri));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the information content of the given class
+	 */
+	public double getInfoContent(int index)
+	{
+		if(index < 0)
+			return 0.0;
+		return termICs[index];
 	}
 
 
@@ -526,10 +1073,72 @@ public class GeneOntology
 	 */
 	public String getLabel(String uri)
 	{
-		return classLabels.get(uri);
+		return getLabel(getIndex(uri));
 	}
 
+	/**
+	 * @param index: the index of the class
+	 * @return the label of the class with the given index
+	 */
+	public String getLabel(int index)
+	{
+		if(index < 0)
+			return null;
+		return termLabels.get(index);
+	}
+
+	/**
+	 * @param index: the index of the class
+	 * @return the local name of the class with the given index
+	 */
+	public String getLocalName(int index)
+	{
+		return indexNames.get(index);
+	}
 
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the first class if it is an ancestor of the second, the
+	 * second class if it is an ancestor of the first, or otherwise the
+	 * common ancestor of both with the shortest sum of max distances to
+	 * them (then the deepest), or -1 if they have no common ancestors
+	 */
+	public int getLowestCommonAncestor(int index1, int index2)
+	{
+		if(index1 < 0 || index2 < 0)
+			return -1;
+		IntTable ancestors = getAncestorIndex();
+		if(ancestors.contains(index2, index1))
+			return index1;
+		if(ancestors.contains(index1, index2))
+			return index2;
+		int[][] distances = getAncestorDistances();
+		int lca = -1;
+		int lowest = Integer.MAX_VALUE;
+		//Walk both (sorted) ancestor lists for the common ancestors
+		int i = 0, j = 0;
+		int size1 = ancestors.size(index1), size2 = ancestors.size(index2);
+		while(i < size1 && j < size2)
+		{
+			int a1 = ancestors.get(index1, i);
+			int a2 = ancestors.get(index2, j);
+			if(a1 < a2)
+				i++;
+			else if(a1 > a2)
+				j++;
+			else
+			{
+				int d = distances[index1][i++] + distances[index2][j++];
+				if(d < lowest || (d == lowest && termDepths[a1] > termDepths[lca]))
+				{
+					lowest = d;
+					lca = a1;
+				}
+			}
+		}
+		return lca;
+	}
 
 	/**
 	 * @param child: the uri of the child class
@@ -541,113 +1150,89 @@ public class GeneOntology
 	{
 		if(child.equals(parent))
 			return 0;
-		if(!ancestorMap.contains(child, parent) || (!useAllRelations && !containsSubClass(child,parent)))
-			return -1;
+		return getMaxDistance(getIndex(child), getIndex(parent));
+	}
 
-		Vector<Relationship> rels = ancestorMap.get(child,parent);
-		int distance = rels.get(0).getDistance();
-		for(Relationship r : rels)
-			if((useAllRelations || r.getProperty()==null) || r.getDistance() > distance)
-				distance = r.getDistance();
-		return distance;
+	/**
+	 * @param child: the index of the child class
+	 * @param parent: the index of the parent class
+	 * @return the max distance between the child and parent,
+	 * or 0 if child equals parent, or -1 if they aren't related
+	 */
+	public int getMaxDistance(int child, int parent)
+	{
+		if(child == parent)
+			return 0;
+		if(child < 0 || parent < 0)
+			return -1;
+		int k = getAncestorIndex().indexOf(child, parent);
+		if(k < 0)
+			return -1;
+		return getAncestorDistances()[child][k];
 	}
 
 
 	//Computes the most common ancestor of two given clases
 	public String getMICA(String uri1, String uri2)
+	{
+		int mica = getMICA(getIndex(uri1), getIndex(uri2));
+		if(mica < 0)
+			return null;
+		return indexURIs.get(mica);
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the index of the most informative common ancestor of the
+	 * two classes, or -1 if they have no common ancestors
+	 */
+	public int getMICA(int index1, int index2)
 	{
 		//If one term is the other's immediate ancestor, it is also the MICA
 		if (useAllRelations)
 		{
-			if (getChildren(uri1).contains(uri2))
-				return uri1;
-			if (getChildren(uri2).contains(uri1))
-				return uri2;
+			if (isChild(index2, index1))
+				return index1;
+			if (isChild(index1, index2))
+				return index2;
 		}
 		else
 		{
-			if (containsSubClass(uri2, uri1))
-				return uri1;
-			if (containsSubClass(uri1, uri2))
-				return uri2;
-		}
-
-		String mica = null;
-		int min = 1000000;
-
-		if (!getCommonAncestors(uri1,uri2).isEmpty())
-		{
-			for (String a: getCommonAncestors(uri1,uri2))
-			{
-				int newCount = countAnnotations(a);
-				if(newCount < min)
-				{
-					min = newCount;
-					mica = a;
-				}
-			}
-			return mica;
+			if (containsSubClass(index2, index1))
+				return index1;
+			if (containsSubClass(index1, index2))
+				return index2;
 		}
 
-		else return null;
+		//Otherwise, it is listed in the MICA table (if there is one) or it is
+		//the first common ancestor in the lists of ancestors ranked by IC
+		if(micaTable != null && micaTable.contains(index1, index2))
+			return micaTable.get(index1, index2);
+		if(index1 < 0 || index2 < 0)
+			return -1;
+		int rank = rankedAncestors.firstCommon(index1, index2);
+		if(rank < 0)
+			return -1;
+		return rankedTerms[rank];
 	}
 
 	/**
-	 * @param gene: the identifier of the gene product 
-	 * @return non redundant terms: none of the set terms is another one's ancestor 
+	 * @param gene: the identifier of the gene product
+	 * @return non redundant terms: none of the set terms is another one's ancestor
 	 */
 	public Set<String> getNonRedundantTerms(String gene)
 	{
-		Vector<String> termVector = new Vector<String>(geneTerms.get(gene));
-
-		for(int i= 0; i < termVector.size()-1; i++)
-		{
-			for(int j = i+1; j < termVector.size(); j++)
-			{
-				if((useAllRelations && containsRelationship(termVector.get(j), termVector.get(i)))
-						|| containsSubClass(termVector.get(j), termVector.get(i)))
-				{
-					termVector.remove(i--);
-					j--;
-					break;
-				}				
-				if((useAllRelations && containsRelationship(termVector.get(i), termVector.get(j)))
-						|| containsSubClass(termVector.get(i), termVector.get(j)))
-				{
-					termVector.remove(j--);
-				}
-			}
-		}
-		return new HashSet<String>(termVector);
+		return getURIs(getNonRedundantIndexes(getAnnotationView(gene)));
 	}
-	
+
 	/**
-	 * @param gene: the identifier of the gene product 
-	 * @return non redundant terms: none of the set terms is another one's ancestor 
+	 * @param gene: the identifier of the gene product
+	 * @return non redundant terms: none of the set terms is another one's ancestor
 	 */
 	public Set<String> getNonRedundantTerms(Set<String> terms)
 	{
-		Vector<String> termVector = new Vector<String>(terms);
-
-		for(int i= 0; i < termVector.size()-1; i++)
-		{
-			for(int j = i+1; j < termVector.size(); j++)
-			{
-				if((useAllRelations && containsRelationship(termVector.get(j), termVector.get(i)))
-						|| containsSubClass(termVector.get(j), termVector.get(i)))
-				{
-					termVector.remove(i--);
-					j--;
-					break;
-				}				
-				if((useAllRelations && containsRelationship(termVector.get(i), termVector.get(j)))
-						|| containsSubClass(termVector.get(i), termVector.get(j)))
-				{
-					termVector.remove(j--);
-				}
-			}
-		}
-		return new HashSet<String>(termVector);
+		return getURIs(getNonRedundantIndexes(getIndexes(terms)));
 	}
 
 	/**
@@ -655,9 +1240,11 @@ public class GeneOntology
 	 */
 	public Set<String> getParents()
 	{
-		if(descendantMap != null)
-			return descendantMap.keySet();
-		return new HashSet<String>();
+		HashSet<String> parents = new HashSet<String>();
+		for(int i = 0; i < descendantMap.rowCount(); i++)
+			if(descendantMap.contains(i))
+				parents.add(indexURIs.get(i));
+		return parents;
 	}
 
 	/**
@@ -669,6 +1256,15 @@ public class GeneOntology
 		return getAncestors(uri,1);
 	}
 
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @return the list of direct parents of the given class
+	 */
+	public Set<Integer> getParents(int index)
+	{
+		return getAncestors(index,1);
+	}
+
 	/**
 	 * @param child: the id of the child class to search in the map
 	 * @param parent: the id of the parent class to search in the map
@@ -676,13 +1272,24 @@ public class GeneOntology
 	 */
 	public Relationship getRelationship(String child, String parent)
 	{
-		if(!ancestorMap.contains(child, parent))
+		return getRelationship(getIndex(child), getIndex(parent));
+	}
+
+	/**
+	 * @param child: the index of the child class to search in the map
+	 * @param parent: the index of the parent class to search in the map
+	 * @return the 'best' relationship between the two classes
+	 */
+	public Relationship getRelationship(int child, int parent)
+	{
+		int[] rels = ancestorMap.get(child,parent);
+		if(rels == null)
 			return null;
-		Relationship rel = ancestorMap.get(child).get(parent).get(0);
-		for(Relationship r : ancestorMap.get(child).get(parent))
-			if(r.compareTo(rel) > 0)
+		int rel = rels[0];
+		for(int r : rels)
+			if(Relationship.compare(r, rel) > 0)
 				rel = r;
-		return rel;
+		return toRelationship(rel);
 	}
 
 	/**
@@ -692,7 +1299,23 @@ public class GeneOntology
 	 */
 	public Vector<Relationship> getRelationships(String child, String parent)
 	{
-		return ancestorMap.get(child).get(parent);
+		return getRelationships(getIndex(child), getIndex(parent));
+	}
+
+	/**
+	 * @param child: the index of the child class to search in the map
+	 * @param parent: the index of the parent class to search in the map
+	 * @return the relationships between the two classes
+	 */
+	public Vector<Relationship> getRelationships(int child, int parent)
+	{
+		int[] rels = ancestorMap.get(child,parent);
+		if(rels == null)
+			return null;
+		Vector<Relationship> list = new Vector<Relationship>(0,1);
+		for(int r : rels)
+			list.add(toRelationship(r));
+		return list;
 	}
 
 	/**
@@ -701,7 +1324,22 @@ public class GeneOntology
 	 */
 	public String getRoot(GOType t)
 	{
-		return rootTerms.get(t);
+		int root = getRootIndex(t);
+		if(root < 0)
+			return null;
+		return indexURIs.get(root);
+	}
+
+	/**
+	 * @param t: the GOType to search
+	 * @return the index of the root term for that GOType, or -1 if
+	 * it isn't listed in the ontology
+	 */
+	public int getRootIndex(GOType t)
+	{
+		if(t == null)
+			return -1;
+		return rootTerms[t.ordinal()];
 	}
 
 	/**
@@ -710,11 +1348,21 @@ public class GeneOntology
 	 * @return the list of direct or indirect subclasses of the input class
 	 */
 	public Set<String> getSubClasses(String uri, boolean direct)
+	{
+		return getURIs(getSubClasses(getIndex(uri), direct));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param direct: whether to return just the direct subclasses or all subclasses
+	 * @return the list of direct or indirect subclasses of the input class
+	 */
+	public Set<Integer> getSubClasses(int index, boolean direct)
 	{
 		if(direct)
-			return getDescendants(uri,1,null);
+			return getDescendants(index,1,null);
 		else
-			return getDescendantsProperty(uri,null);
+			return getDescendantsProperty(index,null);
 	}
 
 	/**
@@ -724,10 +1372,20 @@ public class GeneOntology
 	 */
 	public Set<String> getSuperClasses(String uri, boolean direct)
 	{
-		if(direct)
-			return getAncestors(uri,1,null);
+		return getURIs(getSuperClasses(getIndex(uri), direct));
+	}
+
+	/**
+	 * @param index: the index of the class to search in the map
+	 * @param direct: whether to return just the direct superclasses or all superclasses
+	 * @return the list of direct or indirect superclasses of the input class
+	 */
+	public Set<Integer> getSuperClasses(int index, boolean direct)
+	{
+		if(direct)
+			return getAncestors(index,1,null);
 		else
-			return getAncestorsProperty(uri,null);
+			return getAncestorsProperty(index,null);
 	}
 
 	/**
@@ -736,7 +1394,18 @@ public class GeneOntology
 	 */
 	public GOType getType(String uri)
 	{
-		return termTypes.get(uri);
+		return getType(getIndex(uri));
+	}
+
+	/**
+	 * @param index: the index of the GO term to get
+	 * @return the GOType of the GO term with the given index
+	 */
+	public GOType getType(int index)
+	{
+		if(index < 0)
+			return null;
+		return termTypes[index];
 	}
 
 	/**
@@ -745,12 +1414,34 @@ public class GeneOntology
 	 */
 	public String getURI(String name)
 	{
-		if(nameClasses.containsKey(name))
-			return nameClasses.get(name);
-		else if(alternatives.containsKey(name))
-			return nameClasses.get(alternatives.get(name));
-		else
+		int index = getNameIndex(name);
+		if(index < 0)
 			return null;
+		return indexURIs.get(index);
+	}
+
+	/**
+	 * @param index: the index of the class
+	 * @return the uri of the class with the given index
+	 */
+	public String getURI(int index)
+	{
+		return indexURIs.get(index);
+	}
+
+	/**
+	 * @param name: the local name (or alternative id) of the input Ontology class
+	 * @return the index of the class with the given local name, or -1 if
+	 * it isn't listed in the ontology
+	 */
+	public int getNameIndex(String name)
+	{
+		Integer index = nameIndexes.get(name);
+		if(index == null)
+			index = alternatives.get(name);
+		if(index == null)
+			return -1;
+		return index;
 	}
 
 	/**
@@ -762,9 +1453,24 @@ public class GeneOntology
 	 */
 	public boolean hasProperty(String child, String parent, String property)
 	{
-		Vector<Relationship> rels = getRelationships(child,parent);
-		for(Relationship r : rels)
-			if(r.getProperty() == property)
+		return hasProperty(getIndex(child), getIndex(parent), property);
+	}
+
+	/**
+	 * @param child: the index of the child class to search in the map
+	 * @param parent: the index of the parent class to search in the map
+	 * @param property: the id of the property between child and parent
+	 * @return whether there is a relationship between child and parent
+	 *  with the given property
+	 */
+	public boolean hasProperty(int child, int parent, String property)
+	{
+		int[] rels = ancestorMap.get(child,parent);
+		int p = getPropertyIndex(property);
+		if(rels == null || p < 0)
+			return false;
+		for(int r : rels)
+			if(Relationship.getProperty(r) == p)
 				return true;
 		return false;
 	}
@@ -777,12 +1483,76 @@ public class GeneOntology
 		return ancestorMap.size();
 	}
 
+	/**
+	 * @return whether the ontology uses all relationships or only 'is_a'
+	 */
+	public boolean useAllRelations()
+	{
+		return useAllRelations;
+	}
+
+	/**
+	 * Gets this ontology with its largest tables (the transitive closure,
+	 * the ancestor and descendant indexes and the annotations) stored off
+	 * the heap, so they don't count towards the heap size or the work of the
+	 * garbage collector (this ontology isn't changed, and the new one shares
+	 * all its other data structures)
+	 * @param directory: the directory of the temporary files that back the
+	 * tables, or null to store them in direct memory
+	 * @return the ontology with its tables stored off the heap
+	 * @throws IOException
+	 */
+	public GeneOntology offHeap(File directory) throws IOException
+	{
+		GeneOntology go;
+		try
+		{
+			go = (GeneOntology)super.clone();
+		}
+		catch(CloneNotSupportedException e)
+		{
+			throw new AssertionError(e);
+		}
+		go.ancestorMap = ancestorMap.offHeap(directory);
+		go.descendantMap = descendantMap.offHeap(directory);
+		go.isaAncestors = offHeap(isaAncestors, directory);
+		go.isaDescendants = offHeap(isaDescendants, directory);
+		go.allAncestors = offHeap(allAncestors, directory);
+		go.allDescendants = offHeap(allDescendants, directory);
+		go.rankedAncestors = offHeap(rankedAncestors, directory);
+		go.geneTerms = geneTerms.offHeap(directory);
+		go.termGenes = termGenes.offHeap(directory);
+		go.typedGeneTerms = typedGeneTerms.offHeap(directory);
+		return go;
+	}
+
+	/**
+	 * Gets this ontology with a table of precomputed MICAs, which getMICA
+	 * uses for the pairs of classes it lists (this ontology isn't changed,
+	 * and the new one shares all its data structures)
+	 * @param t: the MICATable (built from this ontology), or null
+	 * @return the ontology with the given MICATable
+	 */
+	public GeneOntology withMICATable(MICATable t)
+	{
+		try
+		{
+			GeneOntology go = (GeneOntology)super.clone();
+			go.micaTable = t;
+			return go;
+		}
+		catch(CloneNotSupportedException e)
+		{
+			throw new AssertionError(e);
+		}
+	}
+
 	/**
 	 * @return the number of annotations in the AnnotationSet
 	 */
 	public int size()
 	{
-		return geneTerms.size();
+		return geneTerms.valueCount();
 	}
 
 	/**
@@ -792,7 +1562,9 @@ public class GeneOntology
 	 */
 	public int subClassCount(String uri, boolean direct)
 	{
-		return getSubClasses(uri,direct).size();
+		if(direct)
+			return getSubClasses(uri,direct).size();
+		return countSubClasses(getIndex(uri));
 	}
 
 	/**
@@ -802,180 +1574,574 @@ public class GeneOntology
 	 */
 	public int superClassCount(String uri, boolean direct)
 	{
-		return getSuperClasses(uri,direct).size();
-	}	
+		if(direct || getIndex(uri) < 0)
+			return getSuperClasses(uri,direct).size();
+		return isaAncestors.size(getIndex(uri));
+	}
+
+	/**
+	 * @return the number of classes in the term dictionary
+	 */
+	public int termCount()
+	{
+		return indexURIs.size();
+	}
 
-	//Private Methods	
+	//Private Methods
 
-	private void addRelationship(OWLClass c, OWLClassExpression e, boolean sub)
+	//Adds a relationship between two indexed classes to the ancestor map
+	//(the descendant map is built from it once it is frozen), or upgrades
+	//the relationship with the same property if the new one supersedes it
+	void addRelationship(int child, int parent, int distance, String prop)
 	{
-		String child = c.getIRI().toString();
-		String parent = null;
-		int distance = (sub) ? 1 : 0;
-		String prop = null;
-		ClassExpressionType type = e.getClassExpressionType();
-		//If it is a class, process it here
-		if(type.equals(ClassExpressionType.OWL_CLASS))
+		int rel = Relationship.pack(distance, addPropertyIndex(prop));
+		for(int k = 0; k < ancestorMap.size(child); k++)
 		{
-			parent = e.asOWLClass().getIRI().toString();
-			if(!uriClasses.contains(parent))
-				return;
+			int r = ancestorMap.getValue(child, k);
+			if(ancestorMap.getKey(child, k) != parent || Relationship.getProperty(r) != Relationship.getProperty(rel))
+				continue;
+			if(Relationship.compare(rel, r) > 0)
+				ancestorMap.set(child, k, rel);
+			return;
 		}
-		//If it is a 'some values' object property restriction, process it
-		else if(type.equals(ClassExpressionType.OBJECT_SOME_VALUES_FROM) ||
-				type.equals(ClassExpressionType.OBJECT_ALL_VALUES_FROM))
+		ancestorMap.add(child,parent,rel);
+	}
+
+	//Adds an alternative local name for an indexed class
+	void addAlternative(String alt, int index)
+	{
+		alternatives.put(alt, index);
+	}
+
+	//Adds the annotations read from an annotation file, resolving their
+	//classes against the term dictionary (each distinct identifier read is
+	//only looked up once)
+	private void addAnnotations(AnnotationBuffer b)
+	{
+		IntTable.Builder annotations = new IntTable.Builder(0);
+		int n = b.indexes.size();
+		//The class of each name read (-1 if it isn't listed, -2 if it was
+		//left out of a sub-ontology, -3 if it wasn't looked up yet), the
+		//index of each gene product and the last gene product each synonym
+		//was put in the map for (-1 if none)
+		int[] classes = new int[n];
+		Arrays.fill(classes, -3);
+		int[] genes = new int[n];
+		Arrays.fill(genes, -1);
+		int[] synonyms = new int[n];
+		Arrays.fill(synonyms, -1);
+		for(int i = 0; i < b.size; i++)
 		{
-			Set<OWLObjectProperty> props = e.getObjectPropertiesInSignature();
-			if(props == null || props.size() != 1)
-				return;
-			OWLObjectProperty p = props.iterator().next();
-			prop = p.getIRI().toString();
-			if(!uriProperties.contains(prop))
-				return;
-			Set<OWLClass> sup = e.getClassesInSignature();
-			if(sup == null || sup.size() != 1)
-				return;					
-			OWLClass cls = sup.iterator().next();
-			parent = cls.getIRI().toString();
-			if(!uriClasses.contains(parent))
-				return;
+			int name = b.names[i];
+			int index;
+			if(name < 0)
+				index = getNameIndex(null);
+			else
+			{
+				if(classes[name] == -3)
+				{
+					String go = b.get(name);
+					classes[name] = getNameIndex(go);
+					//The gene products annotated to classes left out of a
+					//sub-ontology are still listed (without those annotations)
+					if(classes[name] < 0 && droppedNames != null && droppedNames.contains(go))
+						classes[name] = -2;
+				}
+				index = classes[name];
+			}
+			if(index == -1)
+				continue;
+			int gene = b.genes[i];
+			if(genes[gene] < 0)
+				genes[gene] = addGene(b.get(gene));
+			if(index >= 0)
+				annotations.add(genes[gene], index);
+			int syn = b.synonyms[i];
+			if(syn >= 0 && synonyms[syn] != gene)
+			{
+				geneSynonyms.put(b.get(syn), b.get(gene));
+				synonyms[syn] = gene;
+			}
 		}
-		//If it is an intersection of classes, capture the implied subclass relationships
-		else if(type.equals(ClassExpressionType.OBJECT_INTERSECTION_OF))
+		droppedNames = null;
+		geneTerms = annotations.build(indexGenes.size());
+		termGenes = geneTerms.transpose(termCount());
+	}
+
+	//Records the local name of a deprecated class
+	void addDeprecated(String name)
+	{
+		deprecated.add(name);
+	}
+
+	//Adds a gene product to the gene dictionary (if it isn't listed) and
+	//returns its index
+	private int addGene(String gene)
+	{
+		Integer index = geneIndexes.get(gene);
+		if(index == null)
 		{
-			Set<OWLClassExpression> inter = e.asConjunctSet();
-			for(OWLClassExpression cls : inter)
-				addRelationship(c,cls,true);
+			index = indexGenes.size();
+			indexGenes.add(gene);
+			geneIndexes.put(gene, index);
 		}
-		if(parent == null)
-			return;
-		Relationship r = new Relationship(distance,prop);
-		descendantMap.add(parent,child,r);
-		ancestorMap.add(child,parent,r);
+		return index;
 	}
 
-	//Extends the AnnotationSet for transitive closure
-	private void extendAnnotations()
+	//Adds a property to the property dictionary of the relationship maps
+	//(if it isn't listed) and returns its index
+	private int addPropertyIndex(String prop)
+	{
+		if(prop == null)
+			return 0;
+		Integer index = propertyIndexes.get(prop);
+		if(index == null)
+		{
+			index = indexProperties.size();
+			indexProperties.add(prop);
+			propertyIndexes.put(prop, index);
+		}
+		return index;
+	}
+
+	//Adds an object property (as transitive over itself if it is transitive)
+	void addProperty(String uri, String label, boolean transitive)
 	{
-		//We must store the new annotations in a temporary table in order
-		//to avoid concurrent modifications
-		Table2Set<String,String> tempAnnotations = new Table2Set<String,String>();
-		for(String gene : geneTerms.keySet())
-		{		
-			for(String go : geneTerms.get(gene))
+		uriProperties.add(uri);
+		if(label != null)
+			propertyNames.put(uri,label);
+		if(transitive)
+			transitiveOver.add(uri,uri);
+	}
+
+	//Adds the relation stating that p1 is transitive over p2, if both are listed
+	//object properties
+	void addTransitiveOver(String p1, String p2)
+	{
+		if(uriProperties.contains(p1) && uriProperties.contains(p2))
+			transitiveOver.add(p1, p2);
+	}
+
+	//Adds a class to the term dictionary and returns its index
+	int addTerm(String uri, String name, String label, GOType type)
+	{
+		int index = indexURIs.size();
+		indexURIs.add(uri);
+		uriIndexes.put(uri, index);
+		indexNames.add(name);
+		nameIndexes.put(name, index);
+		termLabels.add(label);
+		if(label != null)
+		{
+			//If the label is a GOType, then the term is a root
+			GOType t = GOType.parse(label);
+			if(t != null)
+				rootTerms[t.ordinal()] = index;
+		}
+		if(index == termTypes.length)
+			termTypes = Arrays.copyOf(termTypes, Math.max(16, index*2));
+		termTypes[index] = type;
+		return index;
+	}
+
+	//Writes the term dictionary, asserted relationships and transitive
+	//closure, propagated annotations and IC table to a snapshot (see
+	//GeneOntology(OntologySnapshot))
+	void write(OntologySnapshot s) throws IOException
+	{
+		s.writeBoolean(useAllRelations);
+		s.writeBoolean(structural);
+		//The term dictionary
+		int n = termCount();
+		s.writeInt(n);
+		for(int i = 0; i < n; i++)
+		{
+			s.writeString(indexURIs.get(i));
+			s.writeString(indexNames.get(i));
+			s.writeString(termLabels.get(i));
+			s.writeInt(termTypes[i] == null ? -1 : termTypes[i].ordinal());
+		}
+		for(int root : rootTerms)
+			s.writeInt(root);
+		s.writeInt(alternatives.size());
+		for(String alt : alternatives.keySet())
+		{
+			s.writeString(alt);
+			s.writeInt(alternatives.get(alt));
+		}
+		s.writeInt(deprecated.size());
+		for(String name : deprecated)
+			s.writeString(name);
+		//The object properties (those in the relationship maps first, so
+		//that they are written with their index - 1)
+		HashMap<String,Integer> props = new HashMap<String,Integer>();
+		for(int i = 1; i < indexProperties.size(); i++)
+			props.put(indexProperties.get(i), i-1);
+		for(String p : uriProperties)
+			if(!props.containsKey(p))
+				props.put(p, props.size());
+		String[] propList = new String[props.size()];
+		for(String p : props.keySet())
+			propList[props.get(p)] = p;
+		s.writeInt(propList.length);
+		for(String p : propList)
+		{
+			s.writeString(p);
+			s.writeString(propertyNames.get(p));
+		}
+		s.writeInt(transitiveOver.size());
+		for(String p1 : transitiveOver.keySet())
+		{
+			for(String p2 : transitiveOver.get(p1))
+			{
+				s.writeInt(props.get(p1));
+				s.writeInt(props.get(p2));
+			}
+		}
+		//The transitive closure and the asserted relationships
+		for(IntTable3List m : new IntTable3List[]{ancestorMap, assertedMap})
+		{
+			s.writeInt(m.size());
+			for(int i = 0; i < m.rowCount(); i++)
 			{
-				if(useAllRelations)
+				for(int k = 0; k < m.size(i); k++)
 				{
-					if( go!= null)
-					{
-						for(String ancestor : getAncestors(go))
-							tempAnnotations.add(gene, ancestor);
-					}
+					int r = m.getValue(i, k);
+					s.writeInt(i);
+					s.writeInt(m.getKey(i, k));
+					s.writeInt(Relationship.getDistance(r));
+					s.writeInt(Relationship.getProperty(r) - 1);
 				}
-				else
+			}
+		}
+		//The propagated annotations
+		s.writeInt(indexGenes.size());
+		for(int g = 0; g < indexGenes.size(); g++)
+		{
+			s.writeString(indexGenes.get(g));
+			s.writeInt(geneTerms.size(g));
+			for(int k = 0; k < geneTerms.size(g); k++)
+				s.writeInt(geneTerms.get(g, k));
+		}
+		s.writeInt(geneSynonyms.size());
+		for(String synonym : geneSynonyms.keySet())
+		{
+			s.writeString(synonym);
+			s.writeString(geneSynonyms.get(synonym));
+		}
+		//The IC table
+		for(int i = 0; i < n; i++)
+			s.writeDouble(termICs[i]);
+	}
+
+	//Builds the ancestor and descendant indexes, the ancestor bit sets and
+	//distances and the depths of all classes from the transitive closure
+	private void buildAncestorIndexes()
+	{
+		int n = termCount();
+		int[][] isaAnc = new int[n][];
+		int[][] allAnc = new int[n][];
+		isaDistances = new int[n][];
+		if(useAllRelations)
+			allDistances = new int[n][];
+		int[][] allDist = new int[n][];
+		int[] isaCount = new int[n];
+		int[] allCount = new int[n];
+		isaAncestorBits = new BitTable(n);
+		if(useAllRelations)
+			allAncestorBits = new BitTable(n);
+		for(int i = 0; i < n; i++)
+		{
+			int size = ancestorMap.size(i);
+			allAnc[i] = new int[size];
+			isaAnc[i] = new int[size];
+			isaDistances[i] = new int[size];
+			allDist[i] = new int[size];
+			int all = 0, isa = 0;
+			for(int k = 0; k < size; k++)
+			{
+				//The relationships with each ancestor are contiguous in the
+				//frozen map, and there is at most one 'is_a' relationship
+				int j = ancestorMap.getKey(i, k);
+				int r = ancestorMap.getValue(i, k);
+				int distance = Relationship.getDistance(r);
+				if(all == 0 || allAnc[i][all-1] != j)
 				{
-					for(String ancestor : getSuperClasses(go, false))
-						tempAnnotations.add(gene, ancestor);
+					allAnc[i][all] = j;
+					allDist[i][all++] = distance;
+					allCount[j]++;
+					if(useAllRelations)
+						allAncestorBits.set(i, j);
 				}
+				else if(distance > allDist[i][all-1])
+					allDist[i][all-1] = distance;
+				if(Relationship.getProperty(r) == 0)
+				{
+					isaAnc[i][isa] = j;
+					isaDistances[i][isa++] = distance;
+					isaCount[j]++;
+					isaAncestorBits.set(i, j);
+				}
+			}
+			allAnc[i] = Arrays.copyOf(allAnc[i], all);
+			isaAnc[i] = Arrays.copyOf(isaAnc[i], isa);
+			isaDistances[i] = Arrays.copyOf(isaDistances[i], isa);
+			if(useAllRelations)
+				allDistances[i] = Arrays.copyOf(allDist[i], all);
+			allDist[i] = null;
+		}
+		isaAncestors = new IntTable(isaAnc);
+		allAncestors = new IntTable(allAnc);
+		isaDescendants = new IntTable(transpose(isaAnc, isaCount));
+		allDescendants = new IntTable(transpose(allAnc, allCount));
+		//The depth of each class, from the ancestor indexes just built
+		termDepths = new int[n];
+		for(int i = 0; i < n; i++)
+			termDepths[i] = getMaxDistance(i, getRootIndex(termTypes[i]));
+	}
+
+	//Ranks the classes by decreasing IC (then by increasing number of
+	//annotations and by index) and builds the lists of ancestors of each
+	//class as ranks
+	private void buildRankedAncestors()
+	{
+		int n = termCount();
+		Integer[] order = new Integer[n];
+		for(int i = 0; i < n; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer i, Integer j)
+			{
+				int c = Double.compare(termICs[j], termICs[i]);
+				if(c == 0)
+					c = Integer.compare(countAnnotations(i), countAnnotations(j));
+				if(c == 0)
+					c = Integer.compare(i, j);
+				return c;
 			}
+		});
+		icRanks = new int[n];
+		rankedTerms = new int[n];
+		for(int r = 0; r < n; r++)
+		{
+			rankedTerms[r] = order[r];
+			icRanks[order[r]] = r;
+		}
+		IntTable ancestors = getAncestorIndex();
+		int[][] rows = new int[n][];
+		for(int i = 0; i < n; i++)
+		{
+			rows[i] = new int[ancestors.size(i)];
+			for(int k = 0; k < rows[i].length; k++)
+				rows[i][k] = icRanks[ancestors.get(i, k)];
 		}
-		//Once we have all the new annotations, we can add them to the
-		//AnnotationSet tables
-		for(String gene : tempAnnotations.keySet())
+		rankedAncestors = new IntTable(rows);
+	}
+
+	//Computes the IC of a class
+	private double computeInfoContent(int index)
+	{
+		int root = getRootIndex(termTypes[index]);
+
+		if(root == index || root < 0)
+			return 0.0;
+
+		if(structural)
 		{
-			for(String go : tempAnnotations.get(gene))
+			if (useAllRelations)
+			{
+				return 1-Math.log(1+countDescendants(index))/
+						Math.log(1+countDescendants(root));
+			}
+			else
 			{
-				geneTerms.add(gene,go);
-				termGenes.add(go,gene);
+				return 1-Math.log(1+countSubClasses(index))/
+						Math.log(1+countSubClasses(root));
 			}
 		}
+		else
+		{
+			return 1-Math.log(Math.max(1, countAnnotations(index)))/
+					Math.log(Math.max(1, countAnnotations(root)));
+		}
+	}
+
+	//Computes the IC and squared IC of all classes (in parallel, as each
+	//only depends on the annotations and the transitive closure)
+	private void computeInfoContents()
+	{
+		int n = termCount();
+		termICs = new double[n];
+		squaredICs = new double[n];
+		BlockTask.run(pool, 0, n, 1024, i ->
+		{
+			termICs[i] = computeInfoContent(i);
+			squaredICs[i] = termICs[i] * termICs[i];
+		});
+	}
+
+	//Extends the AnnotationSet for transitive closure
+	private void extendAnnotations()
+	{
+		//The extended annotations of each gene are computed in parallel, by
+		//blocks of genes, and then replace the annotation tables
+		int n = termCount();
+		IntTable ancestors = getAncestorIndex();
+		int[][] extended = new int[geneTerms.size()][];
+		ThreadLocal<BitSet> terms = ThreadLocal.withInitial(() -> new BitSet(n));
+		BlockTask.run(pool, 0, extended.length, 256, g ->
+		{
+			BitSet t = terms.get();
+			t.clear();
+			for(int k = 0; k < geneTerms.size(g); k++)
+			{
+				int go = geneTerms.get(g, k);
+				t.set(go);
+				for(int a = 0; a < ancestors.size(go); a++)
+					t.set(ancestors.get(go, a));
+			}
+			extended[g] = t.stream().toArray();
+		});
+		geneTerms = new IntTable(extended);
+		termGenes = geneTerms.transpose(n);
+	}
+
+	//Finds the classes whose transitive closure can be reused from a previous
+	//release of the ontology: those whose asserted relationships, and those
+	//of all their ancestors, are the same in both releases. Returns the index
+	//of each class in the previous release if its closure is reused (or -1),
+	//or null if no closure can be reused (if the composition rules of the
+	//properties changed or the ontology has cycles)
+	private int[] findReusableClosures(GeneOntology previous, int[][] edges, int[][] children, int[] inDegree)
+	{
+		if(previous == null || !sameTransitiveOver(previous))
+			return null;
+		int n = termCount();
+		//Check that the ontology has no cycles, so all classes are closed in
+		//topological order
+		int[] degree = Arrays.copyOf(inDegree, n);
+		int[] stack = new int[n];
+		int size = 0;
+		for(int i = 0; i < n; i++)
+			if(degree[i] == 0)
+				stack[size++] = i;
+		int count = 0;
+		while(size > 0)
+		{
+			int i = stack[--size];
+			count++;
+			for(int c : children[i])
+				if(--degree[c] == 0)
+					stack[size++] = c;
+		}
+		if(count < n)
+			return null;
+		int[] reused = new int[n];
+		for(int i = 0; i < n; i++)
+			reused[i] = previous.getIndex(indexURIs.get(i));
+		//The classes below a changed class (or below a new class) are closed
+		//anew, and so are their ancestors, whose closures they are closed from
+		boolean[] affected = new boolean[n];
+		for(int i = 0; i < n; i++)
+		{
+			if(!sameRelationships(previous, reused, i, edges[i]))
+			{
+				affected[i] = true;
+				stack[size++] = i;
+			}
+		}
+		while(size > 0)
+		{
+			int i = stack[--size];
+			for(int c : children[i])
+			{
+				if(!affected[c])
+				{
+					affected[c] = true;
+					stack[size++] = c;
+				}
+			}
+		}
+		boolean[] closed = Arrays.copyOf(affected, n);
+		for(int i = 0; i < n; i++)
+			if(affected[i])
+				stack[size++] = i;
+		while(size > 0)
+		{
+			int i = stack[--size];
+			for(int e = 0; e < edges[i].length; e += 3)
+			{
+				int j = edges[i][e];
+				if(!closed[j])
+				{
+					closed[j] = true;
+					stack[size++] = j;
+				}
+			}
+		}
+		for(int i = 0; i < n; i++)
+			if(closed[i])
+				reused[i] = -1;
+		return reused;
 	}
 
 	//Builds the ontology data structures
 	private void init(OWLOntology o)
 	{
+		//Build the axiom indexes the classes are read through
+		indexAxioms(o);
 		//Get the classes and their names and synonyms
 		getClasses(o);
 		//Get the properties
 		getProperties(o);
 		//Build the relationship map
 		getRelationships(o);
-		//Extend the relationship map
-		transitiveClosure();
 	}
 
-	//Processes the classes, their lexical information and cross-references
+	//Builds the axiom indexes of an ontology and its imports that the classes
+	//are read through (by subclass, by equivalent class and by annotation
+	//subject): the OWL API builds each the first time it is used, without
+	//locking, so they are built here before the classes are read in parallel
+	//(looking up owl:Thing, as a lookup of any class builds the whole index)
+	private void indexAxioms(OWLOntology o)
+	{
+		OWLClass thing = manager.getOWLDataFactory().getOWLThing();
+		Set<OWLOntology> ontologies = new HashSet<OWLOntology>(o.getImports());
+		ontologies.add(o);
+		for(OWLOntology ont : ontologies)
+		{
+			ont.getSubClassAxiomsForSubClass(thing);
+			ont.getEquivalentClassesAxioms(thing);
+			ont.getAnnotationAssertionAxioms(thing.getIRI());
+		}
+	}
+
+	//Processes the classes, their lexical information and cross-references:
+	//the classes are read in parallel blocks, then added to the term
+	//dictionary in order (so their indexes are the same as if they were
+	//read sequentially)
 	private void getClasses(OWLOntology o)
 	{
-		//Get an iterator over the ontology classes
-		Set<OWLClass> classes = o.getClassesInSignature(true);
-		for(OWLClass c : classes)
+		OWLClass[] classes = o.getClassesInSignature(true).toArray(new OWLClass[0]);
+		Set<OWLOntology> imports = o.getImports();
+		ClassInfo[] info = new ClassInfo[classes.length];
+		BlockTask.run(pool, 0, classes.length, 256, i ->
+			info[i] = readClass(classes[i], o, imports));
+		for(ClassInfo c : info)
 		{
-			//Then get the URI for each class
-			String classUri = c.getIRI().toString();
-			if(classUri == null || classUri.endsWith("owl#Thing") || classUri.endsWith("owl:Thing"))
+			if(c == null)
 				continue;
-			//Check if the class is deprecated
-			boolean dep = false;
-			for(OWLAnnotation a : c.getAnnotations(o))
-			{
-				if((a.getProperty().toString().equals("owl:deprecated") || a.getProperty().toString().equals("owl:is_obsolete")) && ((OWLLiteral)a.getValue()).parseBoolean())
-				{
-					dep = true;
-					break;
-				}
-			}
 			//If it is deprecated, record it and skip it
-			if(dep)
+			if(c.deprecated)
 			{
-				deprecated.add(getLocalName(classUri).replace('_', ':'));
+				addDeprecated(c.name);
 				continue;
 			}
-
-			uriClasses.add(classUri);
-
-			//Get the local name from the URI
-			String name = getLocalName(classUri).replace('_', ':');
-
-			classNames.put(classUri,name);
-			nameClasses.put(name,classUri);
-
-
-			//Now get the class' label and type
-			Set<OWLAnnotation> annots = c.getAnnotations(o);
-			for(OWLOntology ont : o.getImports())
-				annots.addAll(c.getAnnotations(ont));
-			for(OWLAnnotation annotation : annots)
-			{
-				//Label
-				if(annotation.getProperty().toString().equals("rdfs:label") && annotation.getValue() instanceof OWLLiteral)
-				{
-					OWLLiteral val = (OWLLiteral) annotation.getValue();
-					String lab = val.getLiteral();
-					classLabels.put(classUri,lab);
-					labelClasses.put(lab, classUri);
-					//If the label is a GOType, then the term is a root
-					GOType t = GOType.parse(lab);
-					if(t != null)
-						rootTerms.put(t,classUri);
-				}
-				//Type
-				else if(annotation.getProperty().toString().contains("hasOBONamespace") && annotation.getValue() instanceof OWLLiteral)
-				{
-					OWLLiteral val = (OWLLiteral) annotation.getValue();
-					String type = val.getLiteral();
-					GOType t = GOType.parse(type);
-					if(t != null)
-						termTypes.put(classUri, t);
-				}
-				//Alternative
-				if(annotation.getProperty().toString().contains("hasAlternativeId") && annotation.getValue() instanceof OWLLiteral)
-				{
-					OWLLiteral val = (OWLLiteral) annotation.getValue();
-					String alt = val.getLiteral();
-					alternatives.put(alt, name);
-				}
-			}
+			int index = addTerm(c.uri, c.name, c.label, c.type);
+			for(String alt : c.alts)
+				addAlternative(alt, index);
 		}
 	}
 
@@ -988,10 +2154,10 @@ public class GeneOntology
 		{
 			//Get the URI of each property
 			String propUri = op.getIRI().toString();
-			if(propUri == null || propUri.equals("http://purl.obolibrary.org/obo/BFO_0000051"))
+			if(propUri == null || propUri.equals(HAS_PART))
 				continue;
-			uriProperties.add(propUri);
 			//Get its label
+			String lab = null;
 			Set<OWLAnnotation> annots = op.getAnnotations(o);
 			for(OWLOntology ont : o.getImports())
 				annots.addAll(op.getAnnotations(ont));
@@ -1001,15 +2167,13 @@ public class GeneOntology
 				if(annotation.getProperty().toString().equals("rdfs:label") && annotation.getValue() instanceof OWLLiteral)
 				{
 					OWLLiteral val = (OWLLiteral) annotation.getValue();
-					String lab = val.getLiteral();
-					propertyNames.put(propUri,lab);
+					lab = val.getLiteral();
 					break;
 				}
 			}
 			//If it is transitive, add it to the transitiveOver map
 			//(as transitive over itself)
-			if(op.isTransitive(o))
-				transitiveOver.add(propUri,propUri);
+			addProperty(propUri, lab, op.isTransitive(o));
 		}
 		//Process transitive_over relations (this needs to be done
 		//in a 2nd loop as all properties must already be indexed)
@@ -1043,57 +2207,454 @@ public class GeneOntology
 					continue;
 				String uri1 = chain[2].substring(index1,index2);
 				String uri2 = chain[2].substring(index3,index4);
-				//Make sure the URIs are listed object properties
-				if(!uriProperties.contains(uri1) || !uriProperties.contains(uri2))
-					continue;
 				//If everything checks up, add the relation to the transitiveOver map
-				transitiveOver.add(uri1, uri2);
+				//(provided the URIs are listed object properties)
+				addTransitiveOver(uri1, uri2);
+			}
+		}
+	}
+
+	//Reads all class relationships: the superclass and equivalence axioms of
+	//the classes are read in parallel blocks, then their relationships are
+	//added to the maps in order
+	private void getRelationships(OWLOntology o)
+	{
+		OWLClass[] classes = o.getClassesInSignature(true).toArray(new OWLClass[0]);
+		Set<OWLOntology> imports = o.getDirectImports();
+		RelationshipBuffer[] buffers = new RelationshipBuffer[classes.length];
+		BlockTask.run(pool, 0, classes.length, 256, i ->
+			buffers[i] = readRelationships(classes[i], o, imports));
+		for(RelationshipBuffer b : buffers)
+			if(b != null)
+				for(int k = 0; k < b.size; k++)
+					addRelationship(b.child, b.parents[k], b.distances[k], b.props[k]);
+	}
+
+	//Gets the annotations read in the pool, rethrowing the exception that
+	//stopped them from being read, if any
+	private AnnotationBuffer getAnnotations(ForkJoinTask<AnnotationBuffer> task) throws IOException
+	{
+		try
+		{
+			return task.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException)cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+
+	//Gets the relationship map with the transitive closure
+	IntTable3List getAncestorMap()
+	{
+		return ancestorMap;
+	}
+
+	//Gets the relationship map with the asserted relationships
+	IntTable3List getAssertedMap()
+	{
+		return assertedMap;
+	}
+
+	//Gets the gene products in the annotations, by index (read-only)
+	List<String> getGenes()
+	{
+		return Collections.unmodifiableList(indexGenes);
+	}
+
+	//Gets the ancestor index for the relationships in use
+	IntTable getAncestorIndex()
+	{
+		if(useAllRelations)
+			return allAncestors;
+		return isaAncestors;
+	}
+
+	//Gets the max distances to the ancestors of each class through the
+	//relationships in use, in the order of the ancestor index
+	int[][] getAncestorDistances()
+	{
+		if(useAllRelations)
+			return allDistances;
+		return isaDistances;
+	}
+
+	//Gets the direct ancestors of a class through the relationships in use
+	Set<Integer> getDirectAncestors(int index)
+	{
+		if(useAllRelations)
+			return getParents(index);
+		return getSuperClasses(index, true);
+	}
+
+	//Gets the rank of a class by decreasing IC
+	int getRank(int index)
+	{
+		return icRanks[index];
+	}
+
+	//Gets the ancestors of each class through the relationships in use, as ranks
+	IntTable getRankedAncestors()
+	{
+		return rankedAncestors;
+	}
+
+	//Gets the class with the given rank by decreasing IC
+	int getRankedTerm(int rank)
+	{
+		return rankedTerms[rank];
+	}
+
+	//Gets the index of a gene product (or of the gene product it is a
+	//synonym of), or -1 if it isn't listed
+	private int getGeneIndex(String gene)
+	{
+		Integer index = geneIndexes.get(gene);
+		if(index == null && geneSynonyms.containsKey(gene))
+			index = geneIndexes.get(geneSynonyms.get(gene));
+		if(index == null)
+			return -1;
+		return index;
+	}
+
+	//Gets the index of a property in the relationship maps ('is_a' is 0),
+	//or -1 if it isn't listed
+	private int getPropertyIndex(String prop)
+	{
+		if(prop == null)
+			return 0;
+		Integer index = propertyIndexes.get(prop);
+		if(index == null)
+			return -1;
+		return index;
+	}
+
+	//Gets the ancestor bit sets for the relationships in use
+	private BitTable getAncestorBits()
+	{
+		if(useAllRelations)
+			return allAncestorBits;
+		return isaAncestorBits;
+	}
+
+	//Converts a set of uris to the set of their indexes
+	private Set<Integer> getIndexes(Set<String> uris)
+	{
+		HashSet<Integer> indexes = new HashSet<Integer>();
+		for(String uri : uris)
+		{
+			int index = getIndex(uri);
+			if(index > -1)
+				indexes.add(index);
+		}
+		return indexes;
+	}
+
+	//Gets a row of an index as a read-only set (or an empty set if the
+	//class isn't listed)
+	private Set<Integer> getSet(IntTable t, int index)
+	{
+		if(index < 0)
+			return new HashSet<Integer>();
+		return t.getSet(index);
+	}
+
+	//Moves an index off the heap (if it was built)
+	private static IntTable offHeap(IntTable t, File directory) throws IOException
+	{
+		if(t == null)
+			return null;
+		return t.offHeap(directory);
+	}
+
+	//Get the local name of an entity from its URI
+	private String getLocalName(String uri)
+	{
+		int index = uri.indexOf("#") + 1;
+		if(index == 0)
+			index = uri.lastIndexOf("/") + 1;
+		return uri.substring(index);
+	}
+
+	//Computes the non redundant subset of a set of class indexes
+	private Set<Integer> getNonRedundantIndexes(Set<Integer> terms)
+	{
+		Vector<Integer> termVector = new Vector<Integer>(terms);
+
+		for(int i= 0; i < termVector.size()-1; i++)
+		{
+			for(int j = i+1; j < termVector.size(); j++)
+			{
+				if((useAllRelations && containsRelationship(termVector.get(j), termVector.get(i)))
+						|| containsSubClass(termVector.get(j), termVector.get(i)))
+				{
+					termVector.remove(i--);
+					j--;
+					break;
+				}
+				if((useAllRelations && containsRelationship(termVector.get(i), termVector.get(j)))
+						|| containsSubClass(termVector.get(i), termVector.get(j)))
+				{
+					termVector.remove(j--);
+				}
+			}
+		}
+		return new HashSet<Integer>(termVector);
+	}
+
+	//Converts a set of class indexes to the set of their uris
+	private HashSet<String> getURIs(Set<Integer> indexes)
+	{
+		HashSet<String> uris = new HashSet<String>();
+		for(Integer i : indexes)
+			uris.add(indexURIs.get(i));
+		return uris;
+	}
+
+	//Checks whether the local name is that of a deprecated class
+	boolean isDeprecated(String name)
+	{
+		return deprecated.contains(name);
+	}
+
+	//Checks whether the URI points to an OBO file
+	private boolean isOBO(URI uri)
+	{
+		String path = uri.getPath();
+		return path != null && path.toLowerCase().endsWith(".obo");
+	}
+
+	//Checks whether the child is at distance 1 from the parent
+	private boolean isChild(int child, int parent)
+	{
+		int[] rels = descendantMap.get(parent,child);
+		if(rels == null)
+			return false;
+		for(int r : rels)
+			if(Relationship.getDistance(r) == 1)
+				return true;
+		return false;
+	}
+
+	//Partitions the (propagated) annotations of each gene product by GOType,
+	//so those of a GOType are read as a row of their own
+	private void partitionAnnotations()
+	{
+		int types = GOType.values().length;
+		int[][] rows = new int[geneTerms.size() * types][];
+		int[] counts = new int[types];
+		for(int g = 0; g < geneTerms.size(); g++)
+		{
+			Arrays.fill(counts, 0);
+			for(int k = 0; k < geneTerms.size(g); k++)
+			{
+				GOType t = termTypes[geneTerms.get(g, k)];
+				if(t != null)
+					counts[t.ordinal()]++;
+			}
+			for(int t = 0; t < types; t++)
+			{
+				rows[g * types + t] = new int[counts[t]];
+				counts[t] = 0;
+			}
+			//The rows of the Table are sorted, so the partitions are too
+			for(int k = 0; k < geneTerms.size(g); k++)
+			{
+				int x = geneTerms.get(g, k);
+				if(termTypes[x] != null)
+				{
+					int row = g * types + termTypes[x].ordinal();
+					rows[row][counts[termTypes[x].ordinal()]++] = x;
+				}
+			}
+		}
+		typedGeneTerms = new IntTable(rows);
+	}
+
+	//Reads the URI, local name, label, type and alternative ids of a class,
+	//or null if it is owl:Thing
+	private ClassInfo readClass(OWLClass c, OWLOntology o, Set<OWLOntology> imports)
+	{
+		//Get the URI for the class
+		String classUri = c.getIRI().toString();
+		if(classUri == null || classUri.endsWith("owl#Thing") || classUri.endsWith("owl:Thing"))
+			return null;
+		ClassInfo info = new ClassInfo();
+		info.uri = classUri;
+		//Get the local name from the URI
+		info.name = getLocalName(classUri).replace('_', ':');
+		//Check if the class is deprecated
+		for(OWLAnnotation a : c.getAnnotations(o))
+		{
+			if((a.getProperty().toString().equals("owl:deprecated") || a.getProperty().toString().equals("owl:is_obsolete")) && ((OWLLiteral)a.getValue()).parseBoolean())
+			{
+				info.deprecated = true;
+				return info;
+			}
+		}
+		//Now get the class' label, type and alternative ids
+		Vector<String> alts = new Vector<String>();
+		Set<OWLAnnotation> annots = c.getAnnotations(o);
+		for(OWLOntology ont : imports)
+			annots.addAll(c.getAnnotations(ont));
+		for(OWLAnnotation annotation : annots)
+		{
+			//Label
+			if(annotation.getProperty().toString().equals("rdfs:label") && annotation.getValue() instanceof OWLLiteral)
+			{
+				OWLLiteral val = (OWLLiteral) annotation.getValue();
+				info.label = val.getLiteral();
+			}
+			//Type
+			else if(annotation.getProperty().toString().contains("hasOBONamespace") && annotation.getValue() instanceof OWLLiteral)
+			{
+				OWLLiteral val = (OWLLiteral) annotation.getValue();
+				GOType t = GOType.parse(val.getLiteral());
+				if(t != null)
+					info.type = t;
+			}
+			//Alternative
+			if(annotation.getProperty().toString().contains("hasAlternativeId") && annotation.getValue() instanceof OWLLiteral)
+			{
+				OWLLiteral val = (OWLLiteral) annotation.getValue();
+				alts.add(val.getLiteral());
 			}
 		}
+		info.alts = alts.toArray(new String[alts.size()]);
+		return info;
 	}
 
-	//Reads all class relationships
-	private void getRelationships(OWLOntology o)
+	//Reads the ontology from an OBO file with the native OBO parser
+	private void readOBO(URI uri) throws IOException
 	{
-		//Get an iterator over the ontology classes
-		Set<OWLClass> classes = o.getClassesInSignature(true);
-		//For each term index (from 'termURIs' list)
-		for(OWLClass c : classes)
+		InputStream in;
+		if(uri.toString().startsWith("file:"))
+			in = new FileInputStream(new File(uri));
+		else
+			in = uri.toURL().openStream();
+		try
 		{
-			if(!uriClasses.contains(c.getIRI().toString()))
-				continue;
-			//Get the subclass expressions to capture and add relationships
-			Set<OWLClassExpression> superClasses = c.getSuperClasses(o);
-			for(OWLOntology ont : o.getDirectImports())
-				superClasses.addAll(c.getSuperClasses(ont));
-			for(OWLClassExpression e : superClasses)
-				addRelationship(c,e,true);
-
-			//Get the equivalence expressions to capture and add relationships
-			Set<OWLClassExpression> equivClasses = c.getEquivalentClasses(o);
-			for(OWLOntology ont : o.getDirectImports())
-				equivClasses.addAll(c.getEquivalentClasses(ont));
-			for(OWLClassExpression e : equivClasses)
-				addRelationship(c,e,false);
+			new OBOParser(this).parse(in);
+		}
+		finally
+		{
+			in.close();
 		}
+	}
 
+	//Reads the ontology through the OWL API
+	private void readOWL(URI uri) throws OWLOntologyCreationException
+	{
+		//Increase the entity expansion limit to allow large ontologies
+		System.setProperty(LIMIT, "1000000");
+		//Get an Ontology Manager
+		manager = OWLManager.createOWLOntologyManager();
+		OWLOntology o;
+		//Check if the URI is local
+		if(uri.toString().startsWith("file:"))
+		{
+			File f = new File(uri);
+			o = manager.loadOntologyFromOntologyDocument(f);
+		}
+		else
+		{
+			IRI i = IRI.create(uri);
+			o = manager.loadOntology(i);
+		}
+		init(o);
+		//Close the OntModel
+		manager.removeOntology(o);
+		manager = null;
+		//Reset the entity expansion limit
+		System.clearProperty(LIMIT);
 	}
 
-	//Get the local name of an entity from its URI
-	private String getLocalName(String uri)
+	//Reads the relationship (or relationships, for an intersection) between
+	//a class and a superclass or equivalent class expression to a buffer
+	private void readRelationship(OWLClassExpression e, boolean sub, RelationshipBuffer b)
 	{
-		int index = uri.indexOf("#") + 1;
-		if(index == 0)
-			index = uri.lastIndexOf("/") + 1;
-		return uri.substring(index);
+		int parent = -1;
+		int distance = (sub) ? 1 : 0;
+		String prop = null;
+		ClassExpressionType type = e.getClassExpressionType();
+		//If it is a class, process it here
+		if(type.equals(ClassExpressionType.OWL_CLASS))
+		{
+			parent = getIndex(e.asOWLClass().getIRI().toString());
+		}
+		//If it is a 'some values' object property restriction, process it
+		else if(type.equals(ClassExpressionType.OBJECT_SOME_VALUES_FROM) ||
+				type.equals(ClassExpressionType.OBJECT_ALL_VALUES_FROM))
+		{
+			Set<OWLObjectProperty> props = e.getObjectPropertiesInSignature();
+			if(props == null || props.size() != 1)
+				return;
+			OWLObjectProperty p = props.iterator().next();
+			prop = p.getIRI().toString();
+			if(!uriProperties.contains(prop))
+				return;
+			Set<OWLClass> sup = e.getClassesInSignature();
+			if(sup == null || sup.size() != 1)
+				return;
+			OWLClass cls = sup.iterator().next();
+			parent = getIndex(cls.getIRI().toString());
+		}
+		//If it is an intersection of classes, capture the implied subclass relationships
+		else if(type.equals(ClassExpressionType.OBJECT_INTERSECTION_OF))
+		{
+			Set<OWLClassExpression> inter = e.asConjunctSet();
+			for(OWLClassExpression cls : inter)
+				readRelationship(cls,true,b);
+		}
+		if(parent < 0)
+			return;
+		b.add(parent,distance,prop);
 	}
 
+	//Reads the relationships of a class from its superclass and equivalence
+	//axioms, or null if the class isn't in the term dictionary
+	private RelationshipBuffer readRelationships(OWLClass c, OWLOntology o, Set<OWLOntology> imports)
+	{
+		int child = getIndex(c.getIRI().toString());
+		if(child < 0)
+			return null;
+		RelationshipBuffer b = new RelationshipBuffer(child);
+		//Get the subclass expressions to capture and add relationships
+		Set<OWLClassExpression> superClasses = c.getSuperClasses(o);
+		for(OWLOntology ont : imports)
+			superClasses.addAll(c.getSuperClasses(ont));
+		for(OWLClassExpression e : superClasses)
+			readRelationship(e,true,b);
+
+		//Get the equivalence expressions to capture and add relationships
+		Set<OWLClassExpression> equivClasses = c.getEquivalentClasses(o);
+		for(OWLOntology ont : imports)
+			equivClasses.addAll(c.getEquivalentClasses(ont));
+		for(OWLClassExpression e : equivClasses)
+			readRelationship(e,false,b);
+		return b;
+	}
 
-	//Reads the set of annotations listed in an input file
-	private void readAnnotationFile(String annotFile) throws IOException
+	//Reads the set of annotations listed in an input file (without resolving
+	//them against the term dictionary, so it can be read in parallel with the
+	//ontology)
+	private static AnnotationBuffer readAnnotationFile(String annotFile) throws IOException
 	{
 		//Open the input file or die
 		BufferedReader in = new BufferedReader(new FileReader(annotFile));
+		AnnotationBuffer annotations = new AnnotationBuffer();
 		String line = in.readLine();
 		//Detect the annotation file format
 		AnnotationFileFormat f;
@@ -1144,7 +2705,7 @@ public class GeneOntology
 					}
 					gene = values[1];
 					geneSyn = values[2];
-					go = values[4];					
+					go = values[4];
 				}
 				else
 				{
@@ -1160,82 +2721,363 @@ public class GeneOntology
 				}
 			}
 			line = in.readLine();
-			if(!containsName(go))
-				continue;
+			annotations.add(gene, go, geneSyn);
+		}
+		in.close();
+		return annotations;
+	}
+
+	//Checks whether a class has the same asserted relationships (to the same
+	//classes, by URI) as in a previous release, given the index in that
+	//release of each class
+	private boolean sameRelationships(GeneOntology previous, int[] indexes, int index, int[] edges)
+	{
+		int old = indexes[index];
+		if(old < 0 || previous.assertedMap.size(old) * 3 != edges.length)
+			return false;
+		for(int e = 0; e < edges.length; e += 3)
+		{
+			int parent = indexes[edges[e]];
+			int p = previous.getPropertyIndex(indexProperties.get(edges[e+1]));
+			if(parent < 0 || p < 0)
+				return false;
+			int[] rels = previous.assertedMap.get(old, parent);
+			int r = Relationship.pack(edges[e+2], p);
+			boolean found = false;
+			for(int k = 0; rels != null && k < rels.length && !found; k++)
+				found = rels[k] == r;
+			if(!found)
+				return false;
+		}
+		return true;
+	}
+
+	//Checks whether the composition rules of the properties are the same as
+	//in a previous release
+	private boolean sameTransitiveOver(GeneOntology previous)
+	{
+		if(transitiveOver.keyCount() != previous.transitiveOver.keyCount())
+			return false;
+		for(String p : transitiveOver.keySet())
+			if(!transitiveOver.get(p).equals(previous.transitiveOver.get(p)))
+				return false;
+		return true;
+	}
 
-			String uri = getURI(go);
-			if(uri != null)
+	//Reduces the ontology (before the transitive closure) to the sub-ontology
+	//of a GOType: the classes of the GOType, their ancestors through the
+	//relationships in use and all descendants of those ancestors (whose
+	//annotations are propagated to them) are kept, and all other classes and
+	//their relationships are removed, so the closure, annotations and ICs of
+	//the classes of the GOType are the same as in the whole ontology (the
+	//classes are indexed in the same order)
+	private void selectSubOntology(GOType type)
+	{
+		int n = termCount();
+		//The asserted relationships in use, as parent and child lists
+		int[][] parents = new int[n][];
+		int[] childCount = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			parents[i] = new int[ancestorMap.size(i)];
+			int count = 0;
+			for(int k = 0; k < parents[i].length; k++)
+			{
+				int j = ancestorMap.getKey(i, k);
+				if(j != i && (useAllRelations || Relationship.getProperty(ancestorMap.getValue(i, k)) == 0))
+				{
+					parents[i][count++] = j;
+					childCount[j]++;
+				}
+			}
+			parents[i] = Arrays.copyOf(parents[i], count);
+		}
+		int[][] children = transpose(parents, childCount);
+		//Mark the ancestors of the classes of the GOType, then their descendants
+		boolean[] ancestor = new boolean[n];
+		boolean[] keep = new boolean[n];
+		int[] stack = new int[n];
+		int size = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(type.equals(termTypes[i]))
+			{
+				ancestor[i] = true;
+				stack[size++] = i;
+			}
+		}
+		while(size > 0)
+		{
+			int i = stack[--size];
+			for(int j : parents[i])
+			{
+				if(!ancestor[j])
+				{
+					ancestor[j] = true;
+					stack[size++] = j;
+				}
+			}
+		}
+		for(int i = 0; i < n; i++)
+		{
+			if(ancestor[i])
+			{
+				keep[i] = true;
+				stack[size++] = i;
+			}
+		}
+		while(size > 0)
+		{
+			int i = stack[--size];
+			for(int j : children[i])
+			{
+				if(!keep[j])
+				{
+					keep[j] = true;
+					stack[size++] = j;
+				}
+			}
+		}
+		//Index the classes that are kept again, in the same order
+		Vector<String> uris = indexURIs;
+		Vector<String> names = indexNames;
+		StringArena labels = termLabels;
+		GOType[] types = termTypes;
+		HashMap<String,Integer> alts = alternatives;
+		IntTable3List asserted = ancestorMap;
+		uriIndexes = new HashMap<String,Integer>();
+		indexURIs = new Vector<String>();
+		nameIndexes = new HashMap<String,Integer>();
+		indexNames = new Vector<String>();
+		termLabels = new StringArena();
+		termTypes = new GOType[0];
+		Arrays.fill(rootTerms, -1);
+		alternatives = new HashMap<String,Integer>();
+		droppedNames = new HashSet<String>();
+		int[] indexes = new int[n];
+		for(int i = 0; i < n; i++)
+		{
+			if(keep[i])
+				indexes[i] = addTerm(uris.get(i), names.get(i), labels.get(i), types[i]);
+			else
+			{
+				indexes[i] = -1;
+				droppedNames.add(names.get(i));
+			}
+		}
+		for(String alt : alts.keySet())
+		{
+			int i = indexes[alts.get(alt)];
+			if(i > -1)
+				addAlternative(alt, i);
+			else
+				droppedNames.add(alt);
+		}
+		ancestorMap = new IntTable3List(termCount());
+		for(int i = 0; i < n; i++)
+		{
+			if(!keep[i])
+				continue;
+			for(int k = 0; k < asserted.size(i); k++)
 			{
-				geneTerms.add(gene,uri);
-				termGenes.add(uri, gene);
+				int j = indexes[asserted.getKey(i, k)];
+				if(j > -1)
+					ancestorMap.add(indexes[i], j, asserted.getValue(i, k));
 			}
+		}
+	}
 
-			if(geneSyn != null)
-				geneSynonyms.put(geneSyn, gene);
+	//Unpacks a relationship of the relationship maps
+	Relationship toRelationship(int r)
+	{
+		return new Relationship(Relationship.getDistance(r), indexProperties.get(Relationship.getProperty(r)));
+	}
+
+	//Converts an array of class indexes to a set
+	private HashSet<Integer> toSet(int[] indexes)
+	{
+		HashSet<Integer> set = new HashSet<Integer>();
+		for(int i : indexes)
+			set.add(i);
+		return set;
+	}
+
+	//Transposes the rows of a table, given the number of times each value
+	//occurs in it
+	private int[][] transpose(int[][] rows, int[] counts)
+	{
+		int[][] t = new int[counts.length][];
+		for(int i = 0; i < counts.length; i++)
+		{
+			t[i] = new int[counts[i]];
+			counts[i] = 0;
 		}
-		in.close();
+		for(int i = 0; i < rows.length; i++)
+			for(int j : rows[i])
+				t[j][counts[j]++] = i;
+		return t;
 	}
 
 
-	/**
-	 * Compute the transitive closure of the RelationshipMap
-	 * by adding inherited relationships (and their distances)
-	 * This is an implementation of the Semi-Naive Algorithm
-	 */
-	public void transitiveClosure()
+	//Computes the transitive closure of the relationship maps by adding
+	//inherited relationships (and their distances): the closure of each class
+	//is computed in a single pass, after those of its parents, following a
+	//topological order of the asserted relationships (classes in cycles, such
+	//as equivalences, are closed by iterating until no new relationships are
+	//found)
+	private void transitiveClosure(GeneOntology previous)
 	{
-		Set<String> t = descendantMap.keySet();
-		int lastCount = 0;
-		for(int distance = 1; lastCount != descendantMap.size(); distance++)
+		long time = System.currentTimeMillis();
+		int n = termCount();
+		//Collect the asserted relationships of each class as (parent,
+		//property, distance) triples
+		int[][] edges = new int[n][];
+		int[] inDegree = new int[n];
+		int[] childCount = new int[n];
+		for(int i = 0; i < n; i++)
 		{
-			lastCount = descendantMap.size();
-			for(String i : t)
+			edges[i] = new int[ancestorMap.size(i)*3];
+			for(int k = 0; k < ancestorMap.size(i); k++)
 			{
-				Set<String> childs = getChildren(i);
-				childs.addAll(getEquivalences(i));
-				Set<String> pars = getAncestors(i,distance);
-				for(String j : pars)
+				int j = ancestorMap.getKey(i, k);
+				int r = ancestorMap.getValue(i, k);
+				edges[i][k*3] = j;
+				edges[i][k*3+1] = Relationship.getProperty(r);
+				edges[i][k*3+2] = Relationship.getDistance(r);
+				if(j != i)
 				{
-					Vector<Relationship> rel1 = getRelationships(i,j);
-					for(int k = 0; k < rel1.size(); k++)
-					{
-						Relationship r1 = rel1.get(k);
-						String p1 = r1.getProperty();
-						for(String h : childs)
-						{
-							Vector<Relationship> rel2 = getRelationships(h,i);
-							for(int l = 0; l < rel2.size(); l++)
-							{
-								Relationship r2 = rel2.get(l);
-								String p2 = r2.getProperty();
-								//We only do transitive closure if at least one of the properties
-								//is 'is_a' (-1) or the child property is transitive over the parent
-								//(which covers the case where they are both the same transitive
-								//property)
-								if(!(p1 == null || p2 == null || transitiveOver.contains(p2,p1)))
-									continue;
-								int dist = r1.getDistance() + r2.getDistance();
-								//The child property wins in most cases: if p2 = p1,
-								//if p2 transitive_over p1, and otherwise if p1 = is_a
-								String prop = p2;
-								//The parent property only wins if p2 = is_a and p1 != is_a
-								if(p2 == null || p1 != null)
-									prop = p1;
-								Relationship r = new Relationship(dist,prop);	
-								descendantMap.add(j,h,r);
-								ancestorMap.add(h,j,r);
-							}
-						}
-					}
+					inDegree[i]++;
+					childCount[j]++;
+				}
+			}
+		}
+		int[][] children = new int[n][];
+		for(int i = 0; i < n; i++)
+		{
+			children[i] = new int[childCount[i]];
+			childCount[i] = 0;
+		}
+		for(int i = 0; i < n; i++)
+			for(int k = 0; k < edges[i].length; k += 3)
+				if(edges[i][k] != i)
+					children[edges[i][k]][childCount[edges[i][k]]++] = i;
+		//Keep the asserted relationships (to compare releases)
+		assertedMap = new IntTable3List(n);
+		for(int i = 0; i < n; i++)
+			for(int k = 0; k < edges[i].length; k += 3)
+				assertedMap.add(i, edges[i][k], Relationship.pack(edges[i][k+2], edges[i][k+1]));
+		assertedMap.freeze();
+		//The index in the previous release of each class whose closure is
+		//reused from it (or -1)
+		int[] reused = findReusableClosures(previous, edges, children, inDegree);
+		reusedClosures = 0;
+		for(int i = 0; reused != null && i < n; i++)
+			if(reused[i] > -1)
+				reusedClosures++;
+		//The composition rules: over[p2][p1] states that p2 is transitive over p1
+		int propCount = indexProperties.size();
+		boolean[][] over = new boolean[propCount][propCount];
+		for(int p2 = 1; p2 < propCount; p2++)
+			for(int p1 = 1; p1 < propCount; p1++)
+				over[p2][p1] = transitiveOver.contains(indexProperties.get(p2), indexProperties.get(p1));
+
+		ThreadLocal<ClosureBuilder> builders = ThreadLocal.withInitial(() -> new ClosureBuilder(n, propCount, over));
+		int[][] closure = new int[n][];
+		//Close the classes in topological order (Kahn's algorithm), one level
+		//at a time: the classes in a level only depend on the closures of
+		//classes in previous levels, so they are closed in parallel
+		int[] level = new int[n];
+		int[] next = new int[n];
+		int size = 0;
+		for(int i = 0; i < n; i++)
+			if(inDegree[i] == 0)
+				level[size++] = i;
+		int closed = 0;
+		while(size > 0)
+		{
+			int[] current = level;
+			//The classes whose closure is reused aren't closed (and as their
+			//ancestors are also reused, no class that is closed reads them)
+			BlockTask.run(pool, 0, size, 64, k ->
+			{
+				if(reused == null || reused[current[k]] < 0)
+					closure[current[k]] = builders.get().close(edges[current[k]], closure, null);
+			});
+			closed += size;
+			int count = 0;
+			for(int k = 0; k < size; k++)
+				for(int c : children[level[k]])
+					if(--inDegree[c] == 0)
+						next[count++] = c;
+			level = next;
+			next = current;
+			size = count;
+		}
+		//Close the remaining classes (which are in or below a cycle)
+		if(closed < n)
+		{
+			ClosureBuilder builder = builders.get();
+			for(int i = 0; i < n; i++)
+				if(closure[i] == null)
+					closure[i] = new int[0];
+			boolean changed = true;
+			while(changed)
+			{
+				changed = false;
+				for(int i = 0; i < n; i++)
+				{
+					if(inDegree[i] == 0)
+						continue;
+					int[] c = builder.close(edges[i], closure, closure[i]);
+					if(c.length > closure[i].length)
+						changed = true;
+					closure[i] = c;
 				}
 			}
 		}
-		for(String uri : classNames.keySet())
+		//Rebuild the relationship maps from the closure (which has a single
+		//relationship per ancestor and property) and freeze them
+		ancestorMap = new IntTable3List(n);
+		int[] indexes = null;
+		int[] props = null;
+		if(reused != null)
+		{
+			indexes = new int[previous.termCount()];
+			Arrays.fill(indexes, -1);
+			for(int i = 0; i < n; i++)
+			{
+				int j = previous.getIndex(indexURIs.get(i));
+				if(j > -1)
+					indexes[j] = i;
+			}
+			props = new int[previous.indexProperties.size()];
+			for(int p = 0; p < props.length; p++)
+				props[p] = getPropertyIndex(previous.indexProperties.get(p));
+		}
+		for(int i = 0; i < n; i++)
 		{
-			Relationship r = new Relationship(0,null);	
-			descendantMap.add(uri,uri,r);
-			ancestorMap.add(uri,uri,r);
+			if(reused != null && reused[i] > -1)
+			{
+				//Copy the closure from the previous release
+				IntTable3List m = previous.ancestorMap;
+				for(int k = 0; k < m.size(reused[i]); k++)
+				{
+					int r = m.getValue(reused[i], k);
+					ancestorMap.add(i, indexes[m.getKey(reused[i], k)],
+							Relationship.pack(Relationship.getDistance(r), props[Relationship.getProperty(r)]));
+				}
+				continue;
+			}
+			int[] c = closure[i];
+			for(int k = 0; k < c.length; k += 4)
+				ancestorMap.add(i,c[k],Relationship.pack(c[k+2], c[k+1]));
+			closure[i] = null;
 		}
+		for(int i = 0; i < n; i++)
+			addRelationship(i,i,0,null);
+		ancestorMap.freeze();
+		descendantMap = ancestorMap.transpose(n);
+		closureTime = System.currentTimeMillis() - time;
 	}
 
 	public HashMap<String,Integer> termCountMap (Vector<String> geneSet, GOType type)
@@ -1246,8 +3088,9 @@ public class GeneOntology
 		{
 			for(String g: geneSet)
 			{
-				for (String t: Main.getGO().getAnnotationsGene(g))
+				for (int i: getAnnotationView(g))
 				{
+					String t = indexURIs.get(i);
 					if (count.containsKey(t))
 						count.put(t, count.get(t)+1);
 					else count.put(t,1);
@@ -1258,8 +3101,9 @@ public class GeneOntology
 		{
 			for(String g: geneSet)
 			{
-				for (String t: Main.getGO().getAnnotationsGene(g,type))
+				for (int i: getAnnotationView(g,type))
 				{
+					String t = indexURIs.get(i);
 					if (count.containsKey(t))
 						count.put(t, count.get(t)+1);
 					else count.put(t,1);
@@ -1277,18 +3121,357 @@ public class GeneOntology
 		{
 			for(String g: geneSet)
 			{
-				for (String t: Main.getGO().getAnnotationsGene(g))
-					terms.add(t);
+				for (int i: getAnnotationView(g))
+					terms.add(indexURIs.get(i));
 			}
 		}
 		else
 		{
 			for(String g: geneSet)
 			{
-				for (String t: Main.getGO().getAnnotationsGene(g,type))
-					terms.add(t);
+				for (int i: getAnnotationView(g,type))
+					terms.add(indexURIs.get(i));
 			}
 		}
 		return terms;
 	}
-}
\ No newline at end of file
+
+	//Public Classes
+
+	/**
+	 * Builds a GeneOntology from an ontology file and an annotation file with
+	 * the options set on the Builder. The GeneOntology isn't changed once it
+	 * is built (withMICATable and offHeap return new ones), so any number of
+	 * threads can share it without locks, once it is handed to them (e.g.
+	 * through an ExecutorService or Thread.start, which publish it safely)
+	 */
+	public static class Builder
+	{
+		private URI uri;
+		private String annotFile;
+		private boolean useAllRelations;
+		private boolean structural;
+		private GOType type;
+		private int threads;
+		private boolean offHeap;
+		private File directory;
+		private GeneOntology previous;
+
+		/**
+		 * Constructs a new Builder (with 'is_a' relationships only,
+		 * annotation-based IC, the whole ontology and all processors)
+		 * @param path: the path to the input Ontology file
+		 * @param annotFile: gene product annotation file
+		 */
+		public Builder(String path, String annotFile)
+		{
+			this((new File(path)).toURI(), annotFile);
+		}
+
+		/**
+		 * Constructs a new Builder (with 'is_a' relationships only,
+		 * annotation-based IC, the whole ontology and all processors)
+		 * @param uri: the URI of the input Ontology
+		 * @param annotFile: gene product annotation file
+		 */
+		public Builder(URI uri, String annotFile)
+		{
+			this.uri = uri;
+			this.annotFile = annotFile;
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+
+		/**
+		 * @param useAllRelations: whether to use all relationships or only 'is_a'
+		 * @return this Builder
+		 */
+		public Builder useAllRelations(boolean useAllRelations)
+		{
+			this.useAllRelations = useAllRelations;
+			return this;
+		}
+
+		/**
+		 * @param structural: whether to use the structural IC instead of the
+		 * annotation-based IC
+		 * @return this Builder
+		 */
+		public Builder structural(boolean structural)
+		{
+			this.structural = structural;
+			return this;
+		}
+
+		/**
+		 * @param type: the GOType of the sub-ontology to load, or null to
+		 * load the whole ontology
+		 * @return this Builder
+		 */
+		public Builder type(GOType type)
+		{
+			this.type = type;
+			return this;
+		}
+
+		/**
+		 * @param threads: the number of threads to use for the transitive
+		 * closure and the extension of the annotations
+		 * @return this Builder
+		 */
+		public Builder threads(int threads)
+		{
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * @param offHeap: whether to store the largest tables of the
+		 * GeneOntology in direct memory, off the heap (see offHeap)
+		 * @return this Builder
+		 */
+		public Builder offHeap(boolean offHeap)
+		{
+			this.offHeap = offHeap;
+			directory = null;
+			return this;
+		}
+
+		/**
+		 * @param directory: the directory of the temporary files in which to
+		 * store the largest tables of the GeneOntology, off the heap (see
+		 * offHeap)
+		 * @return this Builder
+		 */
+		public Builder offHeap(File directory)
+		{
+			offHeap = directory != null;
+			this.directory = directory;
+			return this;
+		}
+
+		/**
+		 * @param previous: a previous release of the ontology, from which the
+		 * transitive closure of the classes whose relationships (and whose
+		 * ancestors' relationships) didn't change is copied rather than
+		 * computed, or null to compute the closure of all classes (the
+		 * result is the same either way; see OntologyDiff to compare the
+		 * two releases)
+		 * @return this Builder
+		 */
+		public Builder previous(GeneOntology previous)
+		{
+			this.previous = previous;
+			return this;
+		}
+
+		/**
+		 * @return the GeneOntology read from the files with the options set
+		 * @throws OWLOntologyCreationException
+		 * @throws IOException
+		 */
+		public GeneOntology build() throws OWLOntologyCreationException, IOException
+		{
+			GeneOntology go = new GeneOntology(uri, annotFile, useAllRelations, structural, type, threads, previous);
+			if(offHeap)
+				go = go.offHeap(directory);
+			return go;
+		}
+	}
+
+	//Private Classes
+
+	//The annotations read from an annotation file, before their classes are
+	//resolved: the gene product, class name and gene synonym of each
+	//annotation, in order, as indexes of the distinct Strings read (so
+	//repeated identifiers are kept once)
+	private static class AnnotationBuffer
+	{
+		private HashMap<String,Integer> indexes;
+		private String[] strings;
+		private int[] genes;
+		private int[] names;
+		private int[] synonyms;
+		private int size;
+
+		private AnnotationBuffer()
+		{
+			indexes = new HashMap<String,Integer>();
+			strings = new String[1024];
+			genes = new int[1024];
+			names = new int[1024];
+			synonyms = new int[1024];
+			size = 0;
+		}
+
+		private void add(String gene, String name, String synonym)
+		{
+			if(size == genes.length)
+			{
+				genes = Arrays.copyOf(genes, size*2);
+				names = Arrays.copyOf(names, size*2);
+				synonyms = Arrays.copyOf(synonyms, size*2);
+			}
+			genes[size] = index(gene);
+			names[size] = index(name);
+			synonyms[size++] = index(synonym);
+		}
+
+		//Gets a String by index (-1 is null)
+		private String get(int index)
+		{
+			if(index < 0)
+				return null;
+			return strings[index];
+		}
+
+		//Gets the index of a String, adding it if it isn't listed
+		private int index(String s)
+		{
+			if(s == null)
+				return -1;
+			Integer index = indexes.get(s);
+			if(index == null)
+			{
+				index = indexes.size();
+				if(index == strings.length)
+					strings = Arrays.copyOf(strings, index*2);
+				strings[index] = s;
+				indexes.put(s, index);
+			}
+			return index;
+		}
+	}
+
+	//The lexical information of a class read from the OWL ontology
+	private static class ClassInfo
+	{
+		private String uri;
+		private String name;
+		private String label;
+		private GOType type;
+		private String[] alts;
+		private boolean deprecated;
+	}
+
+	//The relationships of a class read from the OWL ontology, in order
+	private static class RelationshipBuffer
+	{
+		private int child;
+		private int[] parents;
+		private int[] distances;
+		private String[] props;
+		private int size;
+
+		private RelationshipBuffer(int child)
+		{
+			this.child = child;
+			parents = new int[4];
+			distances = new int[4];
+			props = new String[4];
+			size = 0;
+		}
+
+		private void add(int parent, int distance, String prop)
+		{
+			if(size == parents.length)
+			{
+				parents = Arrays.copyOf(parents, size*2);
+				distances = Arrays.copyOf(distances, size*2);
+				props = Arrays.copyOf(props, size*2);
+			}
+			parents[size] = parent;
+			distances[size] = distance;
+			props[size++] = prop;
+		}
+	}
+
+	//Computes the closure of a class from its asserted relationships and the
+	//closures of its parents, as (ancestor, property, distance, shortest
+	//distance) quadruples keeping a single relationship per ancestor and
+	//property (with the longest distance for 'is_a' and the shortest for other
+	//properties, which are composed from the shortest 'is_a' distances)
+	private static class ClosureBuilder
+	{
+		private int propCount;
+		private boolean[][] over;
+		//The position + 1 of each (ancestor, property) in the closure
+		private int[] slots;
+		private int[] closure;
+		private int size;
+
+		private ClosureBuilder(int termCount, int propCount, boolean[][] over)
+		{
+			this.propCount = propCount;
+			this.over = over;
+			slots = new int[termCount * propCount];
+			closure = new int[64];
+		}
+
+		//Computes the closure of a class from its asserted relationships,
+		//the closures of all classes and, optionally, its current closure
+		private int[] close(int[] edges, int[][] closures, int[] current)
+		{
+			size = 0;
+			if(current != null)
+				for(int k = 0; k < current.length; k += 4)
+					add(current[k], current[k+1], current[k+2], current[k+3]);
+			for(int e = 0; e < edges.length; e += 3)
+			{
+				int parent = edges[e];
+				int p2 = edges[e+1];
+				int d2 = edges[e+2];
+				add(parent, p2, d2, d2);
+				int[] c = closures[parent];
+				if(c == null)
+					continue;
+				for(int k = 0; k < c.length; k += 4)
+				{
+					int p1 = c[k+1];
+					//We only do transitive closure if at least one of the properties
+					//is 'is_a' or the child property is transitive over the parent
+					//(which covers the case where they are both the same transitive
+					//property)
+					if(p1 != 0 && p2 != 0 && !over[p2][p1])
+						continue;
+					//The parent property wins unless it is 'is_a'
+					int prop = p1 == 0 ? p2 : p1;
+					if(prop == 0)
+						add(c[k], 0, c[k+2] + d2, c[k+3] + d2);
+					else
+						add(c[k], prop, c[k+3] + d2, c[k+3] + d2);
+				}
+			}
+			int[] result = Arrays.copyOf(closure, size);
+			for(int k = 0; k < size; k += 4)
+				slots[result[k] * propCount + result[k+1]] = 0;
+			return result;
+		}
+
+		private void add(int ancestor, int prop, int distance, int shortest)
+		{
+			int slot = ancestor * propCount + prop;
+			int pos = slots[slot] - 1;
+			if(pos < 0)
+			{
+				if(size == closure.length)
+					closure = Arrays.copyOf(closure, size * 2);
+				slots[slot] = size + 1;
+				closure[size++] = ancestor;
+				closure[size++] = prop;
+				closure[size++] = distance;
+				closure[size++] = shortest;
+			}
+			else
+			{
+				if(prop == 0 && distance > closure[pos+2])
+					closure[pos+2] = distance;
+				if(shortest < closure[pos+3])
+				{
+					closure[pos+3] = shortest;
+					if(prop != 0)
+						closure[pos+2] = shortest;
+				}
+			}
+		}
+	}
+}
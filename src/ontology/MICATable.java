@@ -0,0 +1,261 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A precomputed table of the most informative common ancestor (MICA) of all   *
+* pairs of annotated classes of a GeneOntology, stored in a file as a packed  *
+* lower triangular matrix of class indexes, which is read back through memory *
+* mapped chunks of the file. Tables are keyed like OntologySnapshots, so a    *
+* table built from other input files or options is never used.                *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+
+package ontology;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import util.BlockTask;
+import util.IntTable;
+
+public class MICATable
+{
+
+	//Attributes
+
+	//The table file signature and format version
+	private static final int MAGIC = 0x474F4D54;
+	private static final int VERSION = 1;
+	//The number of entries in each memory mapped chunk of the file
+	private static final int CHUNK = 1 << 28;
+	//The number of rows computed (in parallel) before being written
+	private static final int ROWS = 256;
+
+	//The row of each class in the table (-1 if it isn't in the table)
+	private int[] rows;
+	//The entries of the table, by chunk
+	private IntBuffer[] chunks;
+
+	//Constructors
+
+	private MICATable(){}
+
+	//Public Methods
+
+	/**
+	 * Computes the MICA of all pairs of annotated classes of a GeneOntology
+	 * and saves them to a table file
+	 * @param go: the GeneOntology
+	 * @param file: the path to the table file
+	 * @param key: the key of the table (see OntologySnapshot.getKey)
+	 * @param threads: the number of threads to use
+	 * @throws IOException
+	 */
+	public static void build(GeneOntology go, String file, byte[] key, int threads) throws IOException
+	{
+		int n = go.termCount();
+		//The annotated classes, which are the rows (and columns) of the table
+		int[] terms = new int[n];
+		int m = 0;
+		for(int i = 0; i < n; i++)
+			if(go.countAnnotations(i) > 0)
+				terms[m++] = i;
+		terms = Arrays.copyOf(terms, m);
+		Closure c = new Closure(go);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		try
+		{
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(16 + key.length + m*4);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.put(key);
+			header.putInt(n);
+			header.putInt(m);
+			for(int t : terms)
+				header.putInt(t);
+			header.flip();
+			channel.write(header);
+			//Compute the rows by blocks, in parallel, and write them in order
+			final int[] columns = terms;
+			int[][] block = new int[ROWS][];
+			ThreadLocal<int[]> best = ThreadLocal.withInitial(() -> new int[n]);
+			ThreadLocal<boolean[]> isAncestor = ThreadLocal.withInitial(() -> new boolean[n]);
+			for(int start = 0; start < m; start += ROWS)
+			{
+				int first = start;
+				int end = Math.min(m, start + ROWS);
+				BlockTask.run(pool, first, end, 1, r ->
+					block[r-first] = c.getRow(columns, r, best.get(), isAncestor.get()));
+				for(int r = first; r < end; r++)
+				{
+					ByteBuffer row = ByteBuffer.allocate(block[r-first].length*4);
+					row.asIntBuffer().put(block[r-first]);
+					while(row.hasRemaining())
+						channel.write(row);
+					block[r-first] = null;
+				}
+			}
+		}
+		finally
+		{
+			if(pool != null)
+				pool.shutdown();
+			raf.close();
+		}
+	}
+
+	/**
+	 * Loads a table file
+	 * @param file: the path to the table file
+	 * @param key: the key the table must match
+	 * @return the MICATable, or null if the file doesn't exist, is from
+	 * another format version or doesn't match the key
+	 * @throws IOException
+	 */
+	public static MICATable load(String file, byte[] key) throws IOException
+	{
+		File f = new File(file);
+		if(!f.exists())
+			return null;
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 16 + key.length));
+			if(header.limit() < 16 + key.length || header.getInt() != MAGIC || header.getInt() != VERSION)
+				return null;
+			byte[] k = new byte[key.length];
+			header.get(k);
+			if(!Arrays.equals(k, key))
+				return null;
+			int n = header.getInt();
+			int m = header.getInt();
+			MICATable t = new MICATable();
+			t.rows = new int[n];
+			Arrays.fill(t.rows, -1);
+			long position = header.position();
+			IntBuffer terms = channel.map(FileChannel.MapMode.READ_ONLY, position, m*4L).asIntBuffer();
+			for(int r = 0; r < m; r++)
+				t.rows[terms.get(r)] = r;
+			position += m*4L;
+			//Map the entries by chunks
+			long entries = (long)m * (m+1) / 2;
+			t.chunks = new IntBuffer[(int)((entries + CHUNK - 1) / CHUNK)];
+			for(int i = 0; i < t.chunks.length; i++)
+			{
+				long size = Math.min(CHUNK, entries - (long)i * CHUNK);
+				t.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						position + (long)i * CHUNK * 4, size * 4).asIntBuffer();
+			}
+			return t;
+		}
+		finally
+		{
+			//The mapped chunks remain valid once the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return whether the table lists the MICA of the two classes
+	 */
+	public boolean contains(int index1, int index2)
+	{
+		return index1 > -1 && index2 > -1 && index1 < rows.length &&
+				index2 < rows.length && rows[index1] > -1 && rows[index2] > -1;
+	}
+
+	/**
+	 * @param index1: the index of the first class
+	 * @param index2: the index of the second class
+	 * @return the index of the MICA of the two classes, or -1 if they
+	 * have no common ancestors (the classes must be listed in the table)
+	 */
+	public int get(int index1, int index2)
+	{
+		long i = rows[index1];
+		long j = rows[index2];
+		if(i < j)
+		{
+			long temp = i;
+			i = j;
+			j = temp;
+		}
+		long entry = i * (i+1) / 2 + j;
+		return chunks[(int)(entry / CHUNK)].get((int)(entry % CHUNK));
+	}
+
+	//Private Classes
+
+	//The dynamic programming pass over the DAG that computes the rows of the
+	//table, through the decomposition of the ancestors of each class
+	private static class Closure
+	{
+		private GeneOntology go;
+		private AncestorDecomposition d;
+
+		private Closure(GeneOntology go)
+		{
+			this.go = go;
+			d = new AncestorDecomposition(go);
+		}
+
+		//Computes a row of the table: the MICA of the class in the given row
+		//and each class in the previous rows (and itself), using the given
+		//work arrays (with one position per class, and isAncestor all false)
+		private int[] getRow(int[] terms, int row, int[] best, boolean[] isAncestor)
+		{
+			IntTable ranked = go.getRankedAncestors();
+			int a = terms[row];
+			//best[x] is the best rank among the common ancestors of a and x
+			for(int k = 0; k < ranked.size(a); k++)
+				isAncestor[ranked.get(a, k)] = true;
+			for(int x : d.getOrder())
+			{
+				int b = Integer.MAX_VALUE;
+				for(int e : d.getExtra(x))
+				{
+					int r = go.getRank(e);
+					if(isAncestor[r] && r < b)
+						b = r;
+				}
+				for(int p : d.getParents(x))
+					if(best[p] < b)
+						b = best[p];
+				best[x] = b;
+			}
+			for(int k = 0; k < ranked.size(a); k++)
+				isAncestor[ranked.get(a, k)] = false;
+			int[] result = new int[row+1];
+			for(int j = 0; j <= row; j++)
+			{
+				int b = best[terms[j]];
+				result[j] = b == Integer.MAX_VALUE ? -1 : go.getRankedTerm(b);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,483 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A single-pass reader for the OBO 1.4 release of the Gene Ontology, which    *
+* fills the GeneOntology term dictionary, object properties and relationship  *
+* maps directly from a byte stream, as an alternative to loading the OBO file *
+* through the OWL API. Only the tags used by GeneOntology are decoded; all    *
+* others are skipped at the byte level.                                       *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+
+package ontology;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+class OBOParser
+{
+
+	//Attributes
+
+	//The OBO namespace used to build URIs from OBO ids
+	private static final String OBO = "http://purl.obolibrary.org/obo/";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	//The tags that are processed
+	private static final byte[] ID = tag("id");
+	private static final byte[] NAME = tag("name");
+	private static final byte[] NAMESPACE = tag("namespace");
+	private static final byte[] ALT_ID = tag("alt_id");
+	private static final byte[] IS_A = tag("is_a");
+	private static final byte[] RELATIONSHIP = tag("relationship");
+	private static final byte[] INTERSECTION_OF = tag("intersection_of");
+	private static final byte[] EQUIVALENT_TO = tag("equivalent_to");
+	private static final byte[] IS_OBSOLETE = tag("is_obsolete");
+	private static final byte[] XREF = tag("xref");
+	private static final byte[] IS_TRANSITIVE = tag("is_transitive");
+	private static final byte[] TRANSITIVE_OVER = tag("transitive_over");
+	private static final byte[] HOLDS_OVER_CHAIN = tag("holds_over_chain");
+	private static final byte[] ONTOLOGY = tag("ontology");
+	private static final byte[] TERM_STANZA = tag("[Term]");
+	private static final byte[] TYPEDEF_STANZA = tag("[Typedef]");
+
+	//The types of stanza
+	private static final int HEADER = 0;
+	private static final int TERM = 1;
+	private static final int TYPEDEF = 2;
+	private static final int OTHER = 3;
+
+	//The GeneOntology to fill
+	private GeneOntology go;
+
+	//The input stream and its buffer
+	private InputStream in;
+	private byte[] buffer;
+	private int bufferPos;
+	private int bufferLength;
+	//The current line
+	private byte[] line;
+	private int lineLength;
+
+	//The ontology id (used to build the URIs of object properties without xrefs)
+	private String ontologyId;
+
+	//The current stanza
+	private int stanza;
+	private String id;
+	private String name;
+	private String namespace;
+	private boolean obsolete;
+	private boolean transitive;
+	private Vector<String> alts;
+	private Vector<String> xrefs;
+	private Vector<Edge> edges;
+
+	//The relationships read so far
+	private Vector<Edge> relationships;
+	//The object properties read so far, by id
+	private HashMap<String,Typedef> typedefs;
+	//The transitive_over and holds_over_chain pairs of object property ids
+	private Vector<String[]> chains;
+	//The object property id -> uri map
+	private HashMap<String,String> propertyURIs;
+
+	//Constructors
+
+	/**
+	 * Constructs a new OBOParser for the given GeneOntology
+	 * @param go: the GeneOntology to fill
+	 */
+	OBOParser(GeneOntology go)
+	{
+		this.go = go;
+		buffer = new byte[BUFFER_SIZE];
+		line = new byte[256];
+		ontologyId = "obo";
+		alts = new Vector<String>();
+		xrefs = new Vector<String>();
+		edges = new Vector<Edge>();
+		relationships = new Vector<Edge>();
+		typedefs = new HashMap<String,Typedef>();
+		chains = new Vector<String[]>();
+		propertyURIs = new HashMap<String,String>();
+	}
+
+	//Public Methods
+
+	/**
+	 * Reads the ontology from the given OBO stream into the GeneOntology:
+	 * classes are indexed as they are read, and object properties and
+	 * relationships are added once the whole stream is read (as they can
+	 * reference stanzas that come later in the file)
+	 * @param input: the OBO stream to read
+	 * @throws IOException
+	 */
+	void parse(InputStream input) throws IOException
+	{
+		in = input;
+		bufferPos = 0;
+		bufferLength = 0;
+		stanza = HEADER;
+		while(readLine())
+		{
+			trim();
+			if(lineLength == 0)
+				continue;
+			if(line[0] == '[')
+			{
+				endStanza();
+				startStanza();
+			}
+			else
+				processTag();
+		}
+		endStanza();
+		addProperties();
+		addRelationships();
+	}
+
+	//Private Methods
+
+	//Adds the object properties and their transitive_over relations
+	private void addProperties()
+	{
+		for(String p : typedefs.keySet())
+		{
+			Typedef t = typedefs.get(p);
+			String uri = getPropertyURI(p, t.xref);
+			propertyURIs.put(p, uri);
+			if(!uri.equals(GeneOntology.HAS_PART))
+				go.addProperty(uri, t.name, t.transitive);
+		}
+		for(String[] c : chains)
+			go.addTransitiveOver(getPropertyURI(c[0]), getPropertyURI(c[1]));
+	}
+
+	//Adds the relationships between classes (replicating the way the
+	//OWL translation of the OBO relationships is processed)
+	private void addRelationships()
+	{
+		for(Edge e : relationships)
+		{
+			String prop = null;
+			if(e.property != null)
+			{
+				prop = getPropertyURI(e.property);
+				if(prop.equals(GeneOntology.HAS_PART))
+					continue;
+				//Object properties used without being declared are added
+				//as (non-transitive) properties, as in the OWL translation
+				if(!typedefs.containsKey(e.property))
+				{
+					typedefs.put(e.property, new Typedef(null, null, false));
+					go.addProperty(prop, null, false);
+				}
+			}
+			int parent = getClass(e.parent);
+			if(parent < 0)
+				continue;
+			go.addRelationship(e.child, parent, e.distance, prop);
+		}
+	}
+
+	//Processes the end of a stanza
+	private void endStanza()
+	{
+		if(id == null)
+			return;
+		if(stanza == TERM)
+		{
+			if(obsolete)
+				go.addDeprecated(id);
+			else
+			{
+				int index = go.getIndex(getURI(id));
+				if(index < 0)
+					index = go.addTerm(getURI(id), id, name, namespace == null ? null : GOType.parse(namespace));
+				for(String alt : alts)
+					go.addAlternative(alt, index);
+				for(Edge e : edges)
+				{
+					e.child = index;
+					relationships.add(e);
+				}
+			}
+		}
+		else if(stanza == TYPEDEF)
+		{
+			String xref = null;
+			for(String x : xrefs)
+			{
+				if(x.indexOf(':') > 0)
+				{
+					xref = x;
+					break;
+				}
+			}
+			typedefs.put(id, new Typedef(name, xref, transitive));
+		}
+	}
+
+	//Gets the index of the class with the given id, adding it to the
+	//dictionary if it is referenced but not declared
+	private int getClass(String classId)
+	{
+		String uri = getURI(classId);
+		int index = go.getIndex(uri);
+		if(index < 0 && !go.isDeprecated(classId) && !uri.endsWith("owl#Thing"))
+			index = go.addTerm(uri, classId, null, null);
+		return index;
+	}
+
+	//Gets the uri of an object property from its id
+	private String getPropertyURI(String p)
+	{
+		String uri = propertyURIs.get(p);
+		if(uri == null)
+		{
+			uri = getPropertyURI(p, null);
+			propertyURIs.put(p, uri);
+		}
+		return uri;
+	}
+
+	//Gets the uri of an object property from its id and xref: prefixed ids
+	//(or the xref of unprefixed ones) map to OBO PURLs, otherwise the
+	//property is in the ontology's namespace
+	private String getPropertyURI(String p, String xref)
+	{
+		if(p.indexOf(':') > 0)
+			return getURI(p);
+		if(xref != null)
+			return getURI(xref);
+		return OBO + ontologyId + "#" + p;
+	}
+
+	//Gets the uri of a class from its OBO id
+	private String getURI(String oboId)
+	{
+		int index = oboId.indexOf(':');
+		if(index > 0)
+			return OBO + oboId.substring(0,index) + "_" + oboId.substring(index+1);
+		return OBO + ontologyId + "#" + oboId;
+	}
+
+	//Checks whether the current line starts with the given tag
+	private boolean isTag(byte[] tag)
+	{
+		if(lineLength < tag.length)
+			return false;
+		for(int i = 0; i < tag.length; i++)
+			if(line[i] != tag[i])
+				return false;
+		return true;
+	}
+
+	//Processes a tag-value line
+	private void processTag()
+	{
+		if(stanza == HEADER)
+		{
+			if(isTag(ONTOLOGY))
+				ontologyId = value(ONTOLOGY);
+		}
+		else if(stanza == TERM)
+		{
+			if(isTag(ID))
+				id = value(ID);
+			else if(isTag(NAME))
+				name = value(NAME);
+			else if(isTag(NAMESPACE))
+				namespace = value(NAMESPACE);
+			else if(isTag(ALT_ID))
+				alts.add(value(ALT_ID));
+			else if(isTag(IS_A))
+				edges.add(new Edge(null, value(IS_A), 1));
+			else if(isTag(RELATIONSHIP))
+			{
+				String[] v = value(RELATIONSHIP).split(" +");
+				if(v.length >= 2)
+					edges.add(new Edge(v[0], v[1], 1));
+			}
+			//Intersections are translated into equivalence axioms whose
+			//conjuncts are processed as subclass relationships
+			else if(isTag(INTERSECTION_OF))
+			{
+				String[] v = value(INTERSECTION_OF).split(" +");
+				if(v.length == 1)
+					edges.add(new Edge(null, v[0], 1));
+				else
+					edges.add(new Edge(v[0], v[1], 1));
+			}
+			else if(isTag(EQUIVALENT_TO))
+				edges.add(new Edge(null, value(EQUIVALENT_TO), 0));
+			else if(isTag(IS_OBSOLETE))
+				obsolete = value(IS_OBSOLETE).equals("true");
+		}
+		else if(stanza == TYPEDEF)
+		{
+			if(isTag(ID))
+				id = value(ID);
+			else if(isTag(NAME))
+				name = value(NAME);
+			else if(isTag(XREF))
+				xrefs.add(value(XREF).split(" ")[0]);
+			else if(isTag(IS_TRANSITIVE))
+				transitive = value(IS_TRANSITIVE).equals("true");
+			else if(isTag(TRANSITIVE_OVER))
+				chains.add(new String[]{id, value(TRANSITIVE_OVER)});
+			//Property chains are processed as transitive_over relations
+			//between the two properties in the chain
+			else if(isTag(HOLDS_OVER_CHAIN))
+			{
+				String[] v = value(HOLDS_OVER_CHAIN).split(" +");
+				if(v.length == 2)
+					chains.add(v);
+			}
+		}
+	}
+
+	//Reads the next line from the input stream into the line buffer
+	private boolean readLine() throws IOException
+	{
+		lineLength = 0;
+		while(true)
+		{
+			if(bufferPos == bufferLength)
+			{
+				bufferLength = in.read(buffer, 0, buffer.length);
+				bufferPos = 0;
+				if(bufferLength <= 0)
+				{
+					bufferLength = 0;
+					return lineLength > 0;
+				}
+			}
+			int start = bufferPos;
+			while(bufferPos < bufferLength && buffer[bufferPos] != '\n')
+				bufferPos++;
+			int length = bufferPos - start;
+			if(lineLength + length > line.length)
+				line = Arrays.copyOf(line, Math.max(line.length*2, lineLength + length));
+			System.arraycopy(buffer, start, line, lineLength, length);
+			lineLength += length;
+			if(bufferPos < bufferLength)
+			{
+				bufferPos++;
+				return true;
+			}
+		}
+	}
+
+	//Processes the start of a stanza
+	private void startStanza()
+	{
+		if(isTag(TERM_STANZA))
+			stanza = TERM;
+		else if(isTag(TYPEDEF_STANZA))
+			stanza = TYPEDEF;
+		else
+			stanza = OTHER;
+		id = null;
+		name = null;
+		namespace = null;
+		obsolete = false;
+		transitive = false;
+		alts = new Vector<String>();
+		xrefs = new Vector<String>();
+		edges = new Vector<Edge>();
+	}
+
+	//Gets the byte representation of a tag (including the ':' separator)
+	private static byte[] tag(String t)
+	{
+		if(!t.startsWith("["))
+			t += ":";
+		return t.getBytes(UTF8);
+	}
+
+	//Removes trailing white space (including carriage returns)
+	private void trim()
+	{
+		while(lineLength > 0 && line[lineLength-1] <= ' ')
+			lineLength--;
+	}
+
+	//Gets the value of the current line for the given tag, without trailing
+	//modifiers, comments or escape characters
+	private String value(byte[] tag)
+	{
+		int start = tag.length;
+		while(start < lineLength && line[start] == ' ')
+			start++;
+		int end = start;
+		boolean escaped = false;
+		boolean hasEscapes = false;
+		for(; end < lineLength; end++)
+		{
+			byte b = line[end];
+			if(escaped)
+				escaped = false;
+			else if(b == '\\')
+				escaped = hasEscapes = true;
+			else if((b == '!' || b == '{') && end > start && line[end-1] == ' ')
+				break;
+		}
+		while(end > start && line[end-1] == ' ')
+			end--;
+		String v = new String(line, start, end-start, UTF8);
+		if(hasEscapes)
+			v = v.replaceAll("\\\\(.)", "$1");
+		return v;
+	}
+
+	//A relationship from a class to a parent class (by id), through an
+	//object property (by id, or null for 'is_a')
+	private static class Edge
+	{
+		private int child;
+		private String property;
+		private String parent;
+		private int distance;
+
+		private Edge(String property, String parent, int distance)
+		{
+			this.property = property;
+			this.parent = parent;
+			this.distance = distance;
+		}
+	}
+
+	//The information needed from an object property stanza
+	private static class Typedef
+	{
+		private String name;
+		private String xref;
+		private boolean transitive;
+
+		private Typedef(String name, String xref, boolean transitive)
+		{
+			this.name = name;
+			this.xref = xref;
+			this.transitive = transitive;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* The differences between two releases of a GeneOntology (each with its       *
+* annotations): the classes added, removed and made obsolete, the asserted    *
+* relationships added and removed, the classes whose ancestors, GOType,       *
+* annotations or IC changed, and the gene products whose similarity scores    *
+* may have changed, so the scores computed with the old release can be kept   *
+* for all other pairs of gene products.                                       *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+
+package ontology;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import util.IntTable3List;
+import util.Table3List;
+
+public class OntologyDiff
+{
+
+	//Attributes
+
+	//The URIs of the classes added, removed and made obsolete
+	private HashSet<String> addedTerms;
+	private HashSet<String> removedTerms;
+	private HashSet<String> obsoleteTerms;
+	//The asserted relationships added and removed (child -> parent -> Relationship)
+	private Table3List<String,String,Relationship> addedRelationships;
+	private Table3List<String,String,Relationship> removedRelationships;
+	//The URIs of the classes of the new release that were added or whose
+	//ancestors (with their distances and properties), GOType, number of
+	//annotations or IC changed
+	private HashSet<String> changedTerms;
+	//The gene products whose scores may have changed
+	private HashSet<String> invalidatedGenes;
+
+	//Constructors
+
+	/**
+	 * Compares two releases of a GeneOntology (built with the same options)
+	 * @param oldGO: the old release
+	 * @param newGO: the new release
+	 */
+	public OntologyDiff(GeneOntology oldGO, GeneOntology newGO)
+	{
+		int n = newGO.termCount();
+		int m = oldGO.termCount();
+		//The index of each class in the other release (or -1)
+		int[] oldIndexes = new int[n];
+		int[] newIndexes = new int[m];
+		Arrays.fill(newIndexes, -1);
+		//Whether the classes kept are in the same order in both releases,
+		//as the MICA among ancestors with the same IC is picked by index
+		boolean ordered = true;
+		int last = -1;
+		addedTerms = new HashSet<String>();
+		for(int i = 0; i < n; i++)
+		{
+			oldIndexes[i] = oldGO.getIndex(newGO.getURI(i));
+			if(oldIndexes[i] < 0)
+			{
+				addedTerms.add(newGO.getURI(i));
+				continue;
+			}
+			newIndexes[oldIndexes[i]] = i;
+			if(oldIndexes[i] < last)
+				ordered = false;
+			last = oldIndexes[i];
+		}
+		removedTerms = new HashSet<String>();
+		obsoleteTerms = new HashSet<String>();
+		for(int j = 0; j < m; j++)
+		{
+			if(newIndexes[j] > -1)
+				continue;
+			if(newGO.isDeprecated(oldGO.getLocalName(j)))
+				obsoleteTerms.add(oldGO.getURI(j));
+			else
+				removedTerms.add(oldGO.getURI(j));
+		}
+		addedRelationships = compare(newGO, newGO.getAssertedMap(), oldGO, oldGO.getAssertedMap(), oldIndexes);
+		removedRelationships = compare(oldGO, oldGO.getAssertedMap(), newGO, newGO.getAssertedMap(), newIndexes);
+
+		boolean[] changed = new boolean[n];
+		changedTerms = new HashSet<String>();
+		for(int i = 0; i < n; i++)
+		{
+			int j = oldIndexes[i];
+			changed[i] = j < 0 || newGO.getType(i) != oldGO.getType(j) ||
+					newGO.countAnnotations(i) != oldGO.countAnnotations(j) ||
+					Double.compare(newGO.getInfoContent(i), oldGO.getInfoContent(j)) != 0 ||
+					!sameRow(newGO, newGO.getAncestorMap(), i, oldGO, oldGO.getAncestorMap(), j, oldIndexes);
+			if(changed[i])
+				changedTerms.add(newGO.getURI(i));
+		}
+
+		//A gene product's scores may have changed if its (extended)
+		//annotations changed or include a changed class
+		invalidatedGenes = new HashSet<String>();
+		List<String> genes = newGO.getGenes();
+		for(String g : genes)
+		{
+			Set<Integer> terms = newGO.getAnnotationView(g);
+			Set<Integer> oldTerms = oldGO.getAnnotationView(g);
+			boolean same = ordered && terms.size() == oldTerms.size();
+			for(Integer t : terms)
+				if(same && (changed[t] || !oldTerms.contains(oldIndexes[t])))
+					same = false;
+			if(!same)
+				invalidatedGenes.add(g);
+		}
+		for(String g : oldGO.getGenes())
+			if(newGO.getAnnotationView(g).isEmpty())
+				invalidatedGenes.add(g);
+	}
+
+	//Public Methods
+
+	/**
+	 * @return the URIs of the classes of the new release that aren't in the
+	 * old release
+	 */
+	public Set<String> getAddedTerms()
+	{
+		return Collections.unmodifiableSet(addedTerms);
+	}
+
+	/**
+	 * @return the asserted relationships of the new release that aren't in
+	 * the old release (child URI -> parent URI -> Relationship)
+	 */
+	public Table3List<String,String,Relationship> getAddedRelationships()
+	{
+		return addedRelationships;
+	}
+
+	/**
+	 * @return the URIs of the classes of the new release that were added or
+	 * whose ancestors (with their distances and properties), GOType, number
+	 * of annotations or IC changed
+	 */
+	public Set<String> getChangedTerms()
+	{
+		return Collections.unmodifiableSet(changedTerms);
+	}
+
+	/**
+	 * @return the gene products whose similarity scores may have changed
+	 * (including those annotated in only one of the releases)
+	 */
+	public Set<String> getInvalidatedGenes()
+	{
+		return Collections.unmodifiableSet(invalidatedGenes);
+	}
+
+	/**
+	 * @return the URIs of the classes of the old release that are obsolete
+	 * in the new release
+	 */
+	public Set<String> getObsoleteTerms()
+	{
+		return Collections.unmodifiableSet(obsoleteTerms);
+	}
+
+	/**
+	 * @return the asserted relationships of the old release that aren't in
+	 * the new release (child URI -> parent URI -> Relationship)
+	 */
+	public Table3List<String,String,Relationship> getRemovedRelationships()
+	{
+		return removedRelationships;
+	}
+
+	/**
+	 * @return the URIs of the classes of the old release that aren't in the
+	 * new release (and aren't obsolete in it)
+	 */
+	public Set<String> getRemovedTerms()
+	{
+		return Collections.unmodifiableSet(removedTerms);
+	}
+
+	/**
+	 * @param gene1: the first gene product
+	 * @param gene2: the second gene product
+	 * @return whether the score of the pair of gene products computed with
+	 * the old release must be computed again with the new release (for any
+	 * metric and GOType); the scores of other pairs are the same, up to the
+	 * rounding of sums whose order depends on the indexes of the classes
+	 */
+	public boolean isInvalidated(String gene1, String gene2)
+	{
+		return invalidatedGenes.contains(gene1) || invalidatedGenes.contains(gene2);
+	}
+
+	//Private Methods
+
+	//Lists the relationships of a relationship map that aren't in the map of
+	//another release, given the index in that release of each class
+	private static Table3List<String,String,Relationship> compare(GeneOntology go, IntTable3List map,
+			GeneOntology other, IntTable3List otherMap, int[] indexes)
+	{
+		Table3List<String,String,Relationship> diff = new Table3List<String,String,Relationship>();
+		for(int i = 0; i < map.rowCount(); i++)
+		{
+			for(int k = 0; k < map.size(i); k++)
+			{
+				int j = map.getKey(i, k);
+				Relationship r = go.toRelationship(map.getValue(i, k));
+				if(!contains(other, otherMap, indexes[i], indexes[j], r))
+					diff.add(go.getURI(i), go.getURI(j), r);
+			}
+		}
+		return diff;
+	}
+
+	//Checks whether a relationship map has a relationship with the same
+	//distance and property between two classes
+	private static boolean contains(GeneOntology go, IntTable3List map, int child, int parent, Relationship r)
+	{
+		if(child < 0 || parent < 0)
+			return false;
+		int[] rels = map.get(child, parent);
+		if(rels == null)
+			return false;
+		for(int rel : rels)
+		{
+			Relationship s = go.toRelationship(rel);
+			if(s.getDistance() == r.getDistance() && Objects.equals(s.getProperty(), r.getProperty()))
+				return true;
+		}
+		return false;
+	}
+
+	//Checks whether a class has the same relationships (to the same classes)
+	//in the relationship maps of two releases, given the index in the other
+	//release of each class
+	private static boolean sameRow(GeneOntology go, IntTable3List map, int index,
+			GeneOntology other, IntTable3List otherMap, int otherIndex, int[] indexes)
+	{
+		if(map.size(index) != otherMap.size(otherIndex))
+			return false;
+		for(int k = 0; k < map.size(index); k++)
+		{
+			Relationship r = go.toRelationship(map.getValue(index, k));
+			if(!contains(other, otherMap, otherIndex, indexes[map.getKey(index, k)], r))
+				return false;
+		}
+		return true;
+	}
+}
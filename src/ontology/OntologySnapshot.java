@@ -0,0 +1,288 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A versioned binary snapshot of a fully loaded GeneOntology (term            *
+* dictionary, asserted relationships and transitive closure, propagated       *
+* annotations and IC table), which is read back through memory mapped windows *
+* of the file. Snapshots are keyed by the content hashes of the ontology and  *
+* annotation files, by the useAllRelations/structural flags and by the GOType *
+* the ontology was reduced to (if any), so a stale snapshot is never used.    *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+
+package ontology;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+public class OntologySnapshot
+{
+
+	//Attributes
+
+	//The snapshot file signature and format version
+	private static final int MAGIC = 0x474F5353;
+	private static final int VERSION = 2;
+	//The size of the memory mapped windows
+	private static final int WINDOW = 1 << 28;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	//The output stream (when writing)
+	private DataOutputStream out;
+	//The file channel and current mapped window (when reading)
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long windowStart;
+
+	//Constructors
+
+	private OntologySnapshot(){}
+
+	//Public Methods
+
+	/**
+	 * Computes the key of a snapshot from the contents of its input files
+	 * and the flags used to build the GeneOntology
+	 * @param goFile: the path to the input Ontology file
+	 * @param annotFile: the path to the gene product annotation file
+	 * @param useAllRelations: whether all relations are used
+	 * @param structural: whether the IC is structural
+	 * @return the key of the snapshot
+	 * @throws IOException
+	 */
+	public static byte[] getKey(String goFile, String annotFile, boolean useAllRelations, boolean structural) throws IOException
+	{
+		return getKey(goFile, annotFile, useAllRelations, structural, null);
+	}
+
+	/**
+	 * Computes the key of a snapshot from the contents of its input files,
+	 * the flags used to build the GeneOntology and the GOType of the
+	 * sub-ontology it was reduced to
+	 * @param goFile: the path to the input Ontology file
+	 * @param annotFile: the path to the gene product annotation file
+	 * @param useAllRelations: whether all relations are used
+	 * @param structural: whether the IC is structural
+	 * @param type: the GOType of the sub-ontology, or null for the whole ontology
+	 * @return the key of the snapshot
+	 * @throws IOException
+	 */
+	public static byte[] getKey(String goFile, String annotFile, boolean useAllRelations, boolean structural, GOType type) throws IOException
+	{
+		MessageDigest md = getDigest();
+		md.update(hash(goFile));
+		md.update(hash(annotFile));
+		md.update((byte)(useAllRelations ? 1 : 0));
+		md.update((byte)(structural ? 1 : 0));
+		md.update((byte)VERSION);
+		//The key of the whole ontology is the same as before sub-ontologies
+		if(type != null)
+			md.update((byte)(type.ordinal()+1));
+		return md.digest();
+	}
+
+	/**
+	 * Loads a GeneOntology from a snapshot file
+	 * @param file: the path to the snapshot file
+	 * @param key: the key the snapshot must match
+	 * @return the GeneOntology in the snapshot, or null if the file doesn't
+	 * exist, is from another format version or doesn't match the key
+	 * @throws IOException
+	 */
+	public static GeneOntology load(String file, byte[] key) throws IOException
+	{
+		File f = new File(file);
+		if(!f.exists())
+			return null;
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		OntologySnapshot s = new OntologySnapshot();
+		try
+		{
+			s.channel = raf.getChannel();
+			s.map(0);
+			if(s.channel.size() < 8 || s.readInt() != MAGIC || s.readInt() != VERSION)
+				return null;
+			byte[] k = new byte[key.length];
+			for(int i = 0; i < k.length; i++)
+				k[i] = s.readByte();
+			if(!Arrays.equals(k, key))
+				return null;
+			return new GeneOntology(s);
+		}
+		finally
+		{
+			s.buffer = null;
+			raf.close();
+		}
+	}
+
+	/**
+	 * Saves a GeneOntology to a snapshot file
+	 * @param go: the GeneOntology to save
+	 * @param file: the path to the snapshot file
+	 * @param key: the key of the snapshot
+	 * @throws IOException
+	 */
+	public static void save(GeneOntology go, String file, byte[] key) throws IOException
+	{
+		OntologySnapshot s = new OntologySnapshot();
+		s.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try
+		{
+			s.writeInt(MAGIC);
+			s.writeInt(VERSION);
+			s.out.write(key);
+			go.write(s);
+		}
+		finally
+		{
+			s.out.close();
+		}
+	}
+
+	//Package Methods (used by GeneOntology to read and write its contents)
+
+	boolean readBoolean() throws IOException
+	{
+		return readByte() != 0;
+	}
+
+	byte readByte() throws IOException
+	{
+		ensure(1);
+		return buffer.get();
+	}
+
+	double readDouble() throws IOException
+	{
+		ensure(8);
+		return buffer.getDouble();
+	}
+
+	int readInt() throws IOException
+	{
+		ensure(4);
+		return buffer.getInt();
+	}
+
+	String readString() throws IOException
+	{
+		int length = readInt();
+		if(length < 0)
+			return null;
+		byte[] b = new byte[length];
+		int read = 0;
+		while(read < length)
+		{
+			ensure(1);
+			int n = Math.min(length - read, buffer.remaining());
+			buffer.get(b, read, n);
+			read += n;
+		}
+		return new String(b, UTF8);
+	}
+
+	void writeBoolean(boolean b) throws IOException
+	{
+		out.writeByte(b ? 1 : 0);
+	}
+
+	void writeDouble(double d) throws IOException
+	{
+		out.writeDouble(d);
+	}
+
+	void writeInt(int i) throws IOException
+	{
+		out.writeInt(i);
+	}
+
+	void writeString(String s) throws IOException
+	{
+		if(s == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes(UTF8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	//Private Methods
+
+	//Makes sure the current window has the given number of bytes left,
+	//mapping the next window of the file if it doesn't
+	private void ensure(int bytes) throws IOException
+	{
+		if(buffer.remaining() >= bytes)
+			return;
+		long position = windowStart + buffer.position();
+		if(position + bytes > channel.size())
+			throw new IOException("Truncated snapshot file");
+		map(position);
+	}
+
+	private static MessageDigest getDigest() throws IOException
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	//Computes the content hash of a file
+	private static byte[] hash(String file) throws IOException
+	{
+		MessageDigest md = getDigest();
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] b = new byte[1 << 16];
+			int n;
+			while((n = in.read(b)) > 0)
+				md.update(b, 0, n);
+		}
+		finally
+		{
+			in.close();
+		}
+		return md.digest();
+	}
+
+	//Maps the window of the file starting at the given position
+	private void map(long position) throws IOException
+	{
+		long size = Math.min(WINDOW, channel.size() - position);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		windowStart = position;
+	}
+}
@@ -1,7 +1,9 @@
 /******************************************************************************
 * A relationship between two terms (classes) in the GeneOntology, including   *
 * the distance between them (number of edges) and the type of relationship    *
-* (i.e., the id of the object property).                                      *
+* (i.e., the id of the object property). Relationships are stored packed in   *
+* an int (see pack), with the property given by its index in the ontology     *
+* (0 for 'is_a').                                                             *
 *                                                                             *
 * @author Daniel Faria                                                        *
 ******************************************************************************/
@@ -93,4 +95,53 @@ public class Relationship implements Comparable<Relationship>
 	{
 		return property;
 	}
+
+	/**
+	 * Compares two packed Relationships as compareTo compares Relationships
+	 * @param r1: the first packed Relationship
+	 * @param r2: the second packed Relationship
+	 * @return a positive value if r1 supersedes r2, a negative value if r2
+	 * supersedes r1, or 0 otherwise
+	 */
+	public static int compare(int r1, int r2)
+	{
+		int p1 = getProperty(r1);
+		int p2 = getProperty(r2);
+		if(p1 == 0 && p2 == 0)
+			return getDistance(r1) - getDistance(r2);
+		else if(p1 == 0)
+			return 1;
+		else if(p2 == 0)
+			return -1;
+		return 0;
+	}
+
+	/**
+	 * @param r: the packed Relationship
+	 * @return the distance of the packed Relationship
+	 */
+	public static int getDistance(int r)
+	{
+		return r >>> 16;
+	}
+
+	/**
+	 * @param r: the packed Relationship
+	 * @return the property index of the packed Relationship (0 for 'is_a')
+	 */
+	public static int getProperty(int r)
+	{
+		return r & 0xFFFF;
+	}
+
+	/**
+	 * @param dist: the distance in the Relationship (up to 65535)
+	 * @param p: the property index of the Relationship (0 for 'is_a',
+	 * up to 65535)
+	 * @return the Relationship packed in an int
+	 */
+	public static int pack(int dist, int p)
+	{
+		return (dist << 16) | p;
+	}
 }
\ No newline at end of file
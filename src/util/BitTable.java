@@ -0,0 +1,190 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A table of bit sets indexed by integer rows, where each row is stored as an *
+* array of 64-bit words trimmed to its highest set bit. Set operations        *
+* between rows are word-wise and do not allocate.                             *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.util.Arrays;
+
+public class BitTable
+{
+
+//Attributes
+
+	private long[][] rows;
+	private static final long[] EMPTY = new long[0];
+
+//Constructors
+
+	/**
+	 * Constructs a new Table with the given number of empty rows
+	 * @param size: the number of rows in the Table
+	 */
+	public BitTable(int size)
+	{
+		rows = new long[size][];
+		Arrays.fill(rows, EMPTY);
+	}
+
+//Public Methods
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @return the number of bits set in the row
+	 */
+	public int cardinality(int row)
+	{
+		int count = 0;
+		for(long w : rows[row])
+			count += Long.bitCount(w);
+		return count;
+	}
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @param bit: the bit to search in the row
+	 * @return whether the bit is set in the row
+	 */
+	public boolean contains(int row, int bit)
+	{
+		long[] r = rows[row];
+		int word = bit >>> 6;
+		return word < r.length && (r[word] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @return the number of bits set in both rows
+	 */
+	public int intersectionCount(int a, int b)
+	{
+		long[] ra = rows[a];
+		long[] rb = rows[b];
+		int n = Math.min(ra.length, rb.length);
+		int count = 0;
+		for(int i = 0; i < n; i++)
+			count += Long.bitCount(ra[i] & rb[i]);
+		return count;
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @param weights: the weight of each bit
+	 * @return the sum of the weights of the bits set in both rows
+	 */
+	public double intersectionSum(int a, int b, double[] weights)
+	{
+		long[] ra = rows[a];
+		long[] rb = rows[b];
+		int n = Math.min(ra.length, rb.length);
+		double sum = 0.0;
+		for(int i = 0; i < n; i++)
+			sum += sum(ra[i] & rb[i], i, weights);
+		return sum;
+	}
+
+	/**
+	 * Sets the given bit in the given row
+	 * @param row: the row to update
+	 * @param bit: the bit to set
+	 */
+	public void set(int row, int bit)
+	{
+		long[] r = rows[row];
+		int word = bit >>> 6;
+		if(word >= r.length)
+		{
+			r = Arrays.copyOf(r, word+1);
+			rows[row] = r;
+		}
+		r[word] |= 1L << bit;
+	}
+
+	/**
+	 * @return the number of rows in the Table
+	 */
+	public int size()
+	{
+		return rows.length;
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @return the number of bits set in either row
+	 */
+	public int unionCount(int a, int b)
+	{
+		long[] ra = rows[a];
+		long[] rb = rows[b];
+		if(ra.length < rb.length)
+		{
+			long[] temp = ra;
+			ra = rb;
+			rb = temp;
+		}
+		int count = 0;
+		for(int i = 0; i < rb.length; i++)
+			count += Long.bitCount(ra[i] | rb[i]);
+		for(int i = rb.length; i < ra.length; i++)
+			count += Long.bitCount(ra[i]);
+		return count;
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @param weights: the weight of each bit
+	 * @return the sum of the weights of the bits set in either row
+	 */
+	public double unionSum(int a, int b, double[] weights)
+	{
+		long[] ra = rows[a];
+		long[] rb = rows[b];
+		if(ra.length < rb.length)
+		{
+			long[] temp = ra;
+			ra = rb;
+			rb = temp;
+		}
+		double sum = 0.0;
+		for(int i = 0; i < rb.length; i++)
+			sum += sum(ra[i] | rb[i], i, weights);
+		for(int i = rb.length; i < ra.length; i++)
+			sum += sum(ra[i], i, weights);
+		return sum;
+	}
+
+//Private Methods
+
+	//Sums the weights of the bits set in the given word
+	private double sum(long word, int index, double[] weights)
+	{
+		double sum = 0.0;
+		int offset = index << 6;
+		while(word != 0)
+		{
+			sum += weights[offset + Long.numberOfTrailingZeros(word)];
+			word &= word - 1;
+		}
+		return sum;
+	}
+}
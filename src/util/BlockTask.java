@@ -0,0 +1,93 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A fork/join task that applies an action to each index of a range, which is  *
+* split in halves until it is down to blocks of a given size.                 *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+public class BlockTask extends RecursiveAction
+{
+
+//Attributes
+
+	private static final long serialVersionUID = 1L;
+	private int from;
+	private int to;
+	private int block;
+	private IntConsumer action;
+
+//Constructors
+
+	/**
+	 * Constructs a new BlockTask over the given range
+	 * @param from: the first index of the range
+	 * @param to: the index after the last index of the range
+	 * @param block: the number of indexes processed sequentially
+	 * @param action: the action to apply to each index
+	 */
+	public BlockTask(int from, int to, int block, IntConsumer action)
+	{
+		this.from = from;
+		this.to = to;
+		this.block = Math.max(1, block);
+		this.action = action;
+	}
+
+//Public Methods
+
+	/**
+	 * Applies an action to each index of a range, in parallel in the given
+	 * pool or sequentially (in order) if the pool is null
+	 * @param pool: the pool in which to run the task
+	 * @param from: the first index of the range
+	 * @param to: the index after the last index of the range
+	 * @param block: the number of indexes processed sequentially
+	 * @param action: the action to apply to each index
+	 */
+	public static void run(ForkJoinPool pool, int from, int to, int block, IntConsumer action)
+	{
+		if(pool == null || to - from <= block)
+		{
+			for(int i = from; i < to; i++)
+				action.accept(i);
+		}
+		else
+			pool.invoke(new BlockTask(from, to, block, action));
+	}
+
+//Protected Methods
+
+	@Override
+	protected void compute()
+	{
+		if(to - from <= block)
+		{
+			for(int i = from; i < to; i++)
+				action.accept(i);
+		}
+		else
+		{
+			int mid = (from + to) >>> 1;
+			invokeAll(new BlockTask(from, mid, block, action),
+					new BlockTask(mid, to, block, action));
+		}
+	}
+}
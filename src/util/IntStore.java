@@ -0,0 +1,143 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* An immutable array of integers stored outside the Java heap, either in      *
+* direct buffers or in a temporary file mapped into memory (which the         *
+* operating system can page out), by chunks of at most 2^28 integers so the   *
+* array isn't limited by the size of a single buffer.                         *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+public class IntStore
+{
+
+//Attributes
+
+	//The number of integers in each chunk
+	private static final int SHIFT = 28;
+	private static final int CHUNK = 1 << SHIFT;
+	private static final int MASK = CHUNK - 1;
+	private IntBuffer[] chunks;
+	private int length;
+
+//Constructors
+
+	//Constructs a store from its chunks
+	private IntStore(IntBuffer[] chunks, int length)
+	{
+		this.chunks = chunks;
+		this.length = length;
+	}
+
+//Public Methods
+
+	/**
+	 * Copies an array to a new IntStore
+	 * @param values: the array to copy
+	 * @param directory: the directory of the file that backs the store,
+	 * or null to store it in direct buffers
+	 * @return the IntStore with the values of the array
+	 * @throws IOException
+	 */
+	public static IntStore copyOf(int[] values, File directory) throws IOException
+	{
+		IntBuffer[] chunks = new IntBuffer[(values.length + CHUNK - 1) / CHUNK];
+		if(directory == null)
+		{
+			for(int i = 0; i < chunks.length; i++)
+			{
+				int size = Math.min(CHUNK, values.length - i * CHUNK);
+				chunks[i] = ByteBuffer.allocateDirect(size * 4).order(
+						ByteOrder.nativeOrder()).asIntBuffer();
+				chunks[i].put(values, i * CHUNK, size);
+			}
+			return new IntStore(chunks, values.length);
+		}
+		File file = File.createTempFile("store", ".int", directory);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.setLength(values.length * 4L);
+			FileChannel channel = raf.getChannel();
+			for(int i = 0; i < chunks.length; i++)
+			{
+				int size = Math.min(CHUNK, values.length - i * CHUNK);
+				ByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE,
+						(long)i * CHUNK * 4, size * 4L);
+				chunks[i] = b.order(ByteOrder.nativeOrder()).asIntBuffer();
+				chunks[i].put(values, i * CHUNK, size);
+			}
+		}
+		finally
+		{
+			//The mapped chunks remain valid once the file is closed (and,
+			//where the file system allows it, once the file is deleted)
+			raf.close();
+			if(!file.delete())
+				file.deleteOnExit();
+		}
+		return new IntStore(chunks, values.length);
+	}
+
+	/**
+	 * @param from: the first position of the range to search (inclusive)
+	 * @param to: the last position of the range to search (exclusive)
+	 * @param key: the value to search for in the range, which is sorted
+	 * @return the position of the key, as in Arrays.binarySearch
+	 */
+	public int binarySearch(int from, int to, int key)
+	{
+		int low = from;
+		int high = to - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int v = get(mid);
+			if(v < key)
+				low = mid + 1;
+			else if(v > key)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @param index: the position of the integer to get
+	 * @return the integer in the given position
+	 */
+	public int get(int index)
+	{
+		return chunks[index >>> SHIFT].get(index & MASK);
+	}
+
+	/**
+	 * @return the number of integers in the store
+	 */
+	public int length()
+	{
+		return length;
+	}
+}
@@ -0,0 +1,393 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* An immutable table of integer rows, each a sorted set of integers, stored   *
+* contiguously in a single array with the offset of each row (compressed      *
+* sparse row form). Rows can be read as read-only Sets without copying, and   *
+* Tables can be built incrementally with an IntTable.Builder.                 *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public class IntTable
+{
+
+//Attributes
+
+	//The offset of each row in the values array (plus the end of the last row)
+	private int[] offsets;
+	//The values, which are either in an array or (once the Table is moved
+	//off the heap) in an IntStore
+	private int[] values;
+	private IntStore store;
+
+//Constructors
+
+	/**
+	 * Constructs a new Table from the given rows, which are sorted
+	 * @param rows: the rows of the Table (without repeated values)
+	 */
+	public IntTable(int[][] rows)
+	{
+		offsets = new int[rows.length+1];
+		for(int i = 0; i < rows.length; i++)
+			offsets[i+1] = offsets[i] + rows[i].length;
+		values = new int[offsets[rows.length]];
+		for(int i = 0; i < rows.length; i++)
+		{
+			System.arraycopy(rows[i], 0, values, offsets[i], rows[i].length);
+			Arrays.sort(values, offsets[i], offsets[i+1]);
+		}
+	}
+
+	//Constructs a Table from its packed (and sorted) rows
+	private IntTable(int[] offsets, int[] values)
+	{
+		this.offsets = offsets;
+		this.values = values;
+	}
+
+	//Constructs a Table from its packed rows, stored off the heap
+	private IntTable(int[] offsets, IntStore store)
+	{
+		this.offsets = offsets;
+		this.store = store;
+	}
+
+//Public Methods
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @param value: the value to search in the row
+	 * @return whether the row contains the value
+	 */
+	public boolean contains(int row, int value)
+	{
+		return search(offsets[row], offsets[row+1], value) > -1;
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @return the smallest value in both rows, or -1 if they have none in
+	 * common (found by walking both rows, so it stops at that value)
+	 */
+	public int firstCommon(int a, int b)
+	{
+		int i = offsets[a], j = offsets[b];
+		while(i < offsets[a+1] && j < offsets[b+1])
+		{
+			if(value(i) < value(j))
+				i++;
+			else if(value(i) > value(j))
+				j++;
+			else
+				return value(i);
+		}
+		return -1;
+	}
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @param k: the position of the value in the row
+	 * @return the k-th (smallest) value in the row
+	 */
+	public int get(int row, int k)
+	{
+		return value(offsets[row]+k);
+	}
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @return a read-only view of the row as a Set
+	 */
+	public Set<Integer> getSet(int row)
+	{
+		return new RowSet(offsets[row], offsets[row+1]);
+	}
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @param value: the value to search in the row
+	 * @return the position of the value in the row, or -1 if the row
+	 * doesn't contain it
+	 */
+	public int indexOf(int row, int value)
+	{
+		int i = search(offsets[row], offsets[row+1], value);
+		if(i < 0)
+			return -1;
+		return i - offsets[row];
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @return the values in both rows
+	 */
+	public int[] intersection(int a, int b)
+	{
+		int[] result = new int[Math.min(size(a), size(b))];
+		int n = 0;
+		int i = offsets[a], j = offsets[b];
+		while(i < offsets[a+1] && j < offsets[b+1])
+		{
+			if(value(i) < value(j))
+				i++;
+			else if(value(i) > value(j))
+				j++;
+			else
+			{
+				result[n++] = value(i);
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @param directory: the directory of the file that backs the values
+	 * of the Table, or null to store them in direct memory
+	 * @return a Table with the same rows as this Table, with its values
+	 * stored off the heap (only the row offsets stay on the heap)
+	 * @throws IOException
+	 */
+	public IntTable offHeap(File directory) throws IOException
+	{
+		if(store != null)
+			return this;
+		return new IntTable(offsets, IntStore.copyOf(values, directory));
+	}
+
+	/**
+	 * @return the number of rows in the Table
+	 */
+	public int size()
+	{
+		return offsets.length-1;
+	}
+
+	/**
+	 * @param row: the row to search in the Table
+	 * @return the number of values in the row
+	 */
+	public int size(int row)
+	{
+		return offsets[row+1] - offsets[row];
+	}
+
+	/**
+	 * @param columns: the number of rows of the transposed Table (which
+	 * must be larger than all values in this Table)
+	 * @return the transposed Table, in which each row lists the rows of
+	 * this Table that contain it
+	 */
+	public IntTable transpose(int columns)
+	{
+		//The transposed rows are filled in order of the rows of this Table,
+		//so they are sorted as they are packed
+		int[] t = new int[columns+1];
+		for(int k = 0; k < valueCount(); k++)
+			t[value(k)+1]++;
+		for(int j = 0; j < columns; j++)
+			t[j+1] += t[j];
+		int[] next = Arrays.copyOf(t, columns);
+		int[] v = new int[valueCount()];
+		for(int i = 0; i < size(); i++)
+			for(int k = offsets[i]; k < offsets[i+1]; k++)
+				v[next[value(k)]++] = i;
+		return new IntTable(t, v);
+	}
+
+	/**
+	 * @param a: the first row
+	 * @param b: the second row
+	 * @return the values in either row
+	 */
+	public int[] union(int a, int b)
+	{
+		int[] result = new int[size(a) + size(b)];
+		int n = 0;
+		int i = offsets[a], j = offsets[b];
+		while(i < offsets[a+1] || j < offsets[b+1])
+		{
+			if(j == offsets[b+1] || (i < offsets[a+1] && value(i) < value(j)))
+				result[n++] = value(i++);
+			else if(i == offsets[a+1] || value(i) > value(j))
+				result[n++] = value(j++);
+			else
+			{
+				result[n++] = value(i);
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * @return the total number of values in the Table
+	 */
+	public int valueCount()
+	{
+		return offsets[offsets.length-1];
+	}
+
+//Private Methods
+
+	//Gets the value in a position of the values array (or store)
+	private int value(int k)
+	{
+		if(values != null)
+			return values[k];
+		return store.get(k);
+	}
+
+	//Searches a sorted range of the values array (or store)
+	private int search(int from, int to, int key)
+	{
+		if(values != null)
+			return Arrays.binarySearch(values, from, to, key);
+		return store.binarySearch(from, to, key);
+	}
+
+//Public Classes
+
+	//Collects the rows of a Table, which may have repeated values
+	public static class Builder
+	{
+		private int[][] rows;
+		private int[] sizes;
+		private int rowCount;
+
+		/**
+		 * Constructs a new Builder
+		 * @param rows: the expected number of rows
+		 */
+		public Builder(int rows)
+		{
+			this.rows = new int[Math.max(16, rows)][];
+			sizes = new int[this.rows.length];
+			rowCount = 0;
+		}
+
+		/**
+		 * Adds a value to a row
+		 * @param row: the row (which is added if it doesn't exist)
+		 * @param value: the value to add to the row
+		 */
+		public void add(int row, int value)
+		{
+			if(row >= rows.length)
+			{
+				rows = Arrays.copyOf(rows, Math.max(row+1, rows.length*2));
+				sizes = Arrays.copyOf(sizes, rows.length);
+			}
+			if(row >= rowCount)
+				rowCount = row+1;
+			if(rows[row] == null)
+				rows[row] = new int[4];
+			else if(sizes[row] == rows[row].length)
+				rows[row] = Arrays.copyOf(rows[row], sizes[row]*2);
+			rows[row][sizes[row]++] = value;
+		}
+
+		/**
+		 * @param minRows: the minimum number of rows of the Table
+		 * @return the Table with the rows collected so far (without
+		 * repeated values)
+		 */
+		public IntTable build(int minRows)
+		{
+			int[][] t = new int[Math.max(minRows, rowCount)][];
+			for(int i = 0; i < t.length; i++)
+			{
+				if(i >= rowCount || rows[i] == null)
+				{
+					t[i] = new int[0];
+					continue;
+				}
+				int[] row = Arrays.copyOf(rows[i], sizes[i]);
+				Arrays.sort(row);
+				int n = 0;
+				for(int k = 0; k < row.length; k++)
+					if(n == 0 || row[k] != row[n-1])
+						row[n++] = row[k];
+				t[i] = Arrays.copyOf(row, n);
+			}
+			return new IntTable(t);
+		}
+	}
+
+//Private Classes
+
+	//A read-only view of a row
+	private class RowSet extends AbstractSet<Integer>
+	{
+		private int start;
+		private int end;
+
+		private RowSet(int start, int end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean contains(Object o)
+		{
+			return o instanceof Integer &&
+					search(start, end, (Integer)o) > -1;
+		}
+
+		@Override
+		public Iterator<Integer> iterator()
+		{
+			return new Iterator<Integer>()
+			{
+				private int next = start;
+
+				@Override
+				public boolean hasNext()
+				{
+					return next < end;
+				}
+
+				@Override
+				public Integer next()
+				{
+					if(next >= end)
+						throw new NoSuchElementException();
+					return value(next++);
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return end - start;
+		}
+	}
+}
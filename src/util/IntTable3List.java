@@ -0,0 +1,364 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* A table with three columns of (non-negative) ints, in which each pair of    *
+* keys can have a list of values. The rows are kept in growable arrays while  *
+* the Table is built, and are packed in parallel arrays of keys and values,   *
+* sorted by second level key, once it is frozen (compressed sparse row form), *
+* after which the Table is read-only.                                         *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class IntTable3List
+{
+
+//Attributes
+
+	//The second level keys and the values of each row, and the number of
+	//entries in each row (while the Table is being built)
+	private int[][] rowKeys;
+	private int[][] rowValues;
+	private int[] rowSizes;
+	//The offset of each row in the keys and values arrays, plus the end of
+	//the last row (once the Table is frozen)
+	private int[] offsets;
+	private int[] keys;
+	private int[] values;
+	//The keys and values, once the frozen Table is moved off the heap
+	private IntStore keyStore;
+	private IntStore valueStore;
+	private int rows;
+	private int size;
+
+//Constructors
+
+	/**
+	 * Constructs a new empty Table
+	 * @param rows: the expected number of first level keys
+	 */
+	public IntTable3List(int rows)
+	{
+		rowKeys = new int[Math.max(16, rows)][];
+		rowValues = new int[rowKeys.length][];
+		rowSizes = new int[rowKeys.length];
+		this.rows = 0;
+		size = 0;
+	}
+
+	//Constructs a frozen Table from its packed arrays
+	private IntTable3List(int[] offsets, int[] keys, int[] values)
+	{
+		this.offsets = offsets;
+		this.keys = keys;
+		this.values = values;
+		rows = offsets.length-1;
+		size = keys.length;
+	}
+
+	//Constructs a frozen Table from its packed arrays, stored off the heap
+	private IntTable3List(int[] offsets, IntStore keys, IntStore values)
+	{
+		this.offsets = offsets;
+		keyStore = keys;
+		valueStore = values;
+		rows = offsets.length-1;
+		size = keys.length();
+	}
+
+//Public Methods
+
+	/**
+	 * Adds an entry to the Table (without checking whether the Table
+	 * already contains it)
+	 * @param keyA: the first level key to add to the Table
+	 * @param keyB: the second level key to add to the Table
+	 * @param valueC: the value for the pair of keys to add to the Table
+	 */
+	public void add(int keyA, int keyB, int valueC)
+	{
+		if(isFrozen())
+			throw new UnsupportedOperationException("The Table is frozen");
+		if(keyA >= rowKeys.length)
+		{
+			int length = Math.max(keyA+1, rowKeys.length*2);
+			rowKeys = Arrays.copyOf(rowKeys, length);
+			rowValues = Arrays.copyOf(rowValues, length);
+			rowSizes = Arrays.copyOf(rowSizes, length);
+		}
+		if(keyA >= rows)
+			rows = keyA+1;
+		int n = rowSizes[keyA];
+		if(rowKeys[keyA] == null)
+		{
+			rowKeys[keyA] = new int[2];
+			rowValues[keyA] = new int[2];
+		}
+		else if(n == rowKeys[keyA].length)
+		{
+			rowKeys[keyA] = Arrays.copyOf(rowKeys[keyA], n*2);
+			rowValues[keyA] = Arrays.copyOf(rowValues[keyA], n*2);
+		}
+		rowKeys[keyA][n] = keyB;
+		rowValues[keyA][n] = valueC;
+		rowSizes[keyA]++;
+		size++;
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @return whether the Table contains the first level keyA
+	 */
+	public boolean contains(int keyA)
+	{
+		return size(keyA) > 0;
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @param keyB: the second level key to search in the Table
+	 * @return whether the Table contains an entry with the two keys
+	 */
+	public boolean contains(int keyA, int keyB)
+	{
+		return indexOf(keyA, keyB) > -1;
+	}
+
+	/**
+	 * Packs the rows of the Table and sorts them by second level key
+	 * (keeping the order of the values for each pair of keys), after
+	 * which the Table is read-only
+	 */
+	public void freeze()
+	{
+		if(isFrozen())
+			return;
+		offsets = new int[rows+1];
+		for(int a = 0; a < rows; a++)
+			offsets[a+1] = offsets[a] + rowSizes[a];
+		keys = new int[size];
+		values = new int[size];
+		for(int a = 0; a < rows; a++)
+		{
+			int n = rowSizes[a];
+			//Sort the row by (key, position) so the sort is stable
+			long[] order = new long[n];
+			for(int i = 0; i < n; i++)
+				order[i] = ((long)rowKeys[a][i] << 32) | i;
+			Arrays.sort(order);
+			for(int i = 0; i < n; i++)
+			{
+				int j = (int)order[i];
+				keys[offsets[a]+i] = rowKeys[a][j];
+				values[offsets[a]+i] = rowValues[a][j];
+			}
+		}
+		rowKeys = null;
+		rowValues = null;
+		rowSizes = null;
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @param keyB: the second level key to search in the Table
+	 * @return the values for the entries with the two keys or null
+	 * if no such entry exists
+	 */
+	public int[] get(int keyA, int keyB)
+	{
+		int i = indexOf(keyA, keyB);
+		if(i < 0)
+			return null;
+		int[] list = new int[size(keyA)-i];
+		int n = 0;
+		//The entries with the two keys are contiguous once the Table is frozen
+		for(; i < size(keyA); i++)
+		{
+			if(getKey(keyA, i) == keyB)
+				list[n++] = getValue(keyA, i);
+			else if(isFrozen())
+				break;
+		}
+		return Arrays.copyOf(list, n);
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @param k: the position of the entry in the row of keyA
+	 * @return the second level key of the k-th entry with keyA
+	 */
+	public int getKey(int keyA, int k)
+	{
+		if(keyStore != null)
+			return keyStore.get(offsets[keyA]+k);
+		if(isFrozen())
+			return keys[offsets[keyA]+k];
+		return rowKeys[keyA][k];
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @param k: the position of the entry in the row of keyA
+	 * @return the value of the k-th entry with keyA
+	 */
+	public int getValue(int keyA, int k)
+	{
+		if(valueStore != null)
+			return valueStore.get(offsets[keyA]+k);
+		if(isFrozen())
+			return values[offsets[keyA]+k];
+		return rowValues[keyA][k];
+	}
+
+	/**
+	 * @return whether the Table is frozen (and read-only)
+	 */
+	public boolean isFrozen()
+	{
+		return offsets != null;
+	}
+
+	/**
+	 * @param directory: the directory of the files that back the keys and
+	 * values of the Table, or null to store them in direct memory
+	 * @return a frozen Table with the same entries as this Table (which is
+	 * frozen first), with its second level keys and values stored off the
+	 * heap (only the row offsets stay on the heap)
+	 * @throws IOException
+	 */
+	public IntTable3List offHeap(File directory) throws IOException
+	{
+		freeze();
+		if(keyStore != null)
+			return this;
+		return new IntTable3List(offsets, IntStore.copyOf(keys, directory),
+				IntStore.copyOf(values, directory));
+	}
+
+	/**
+	 * @return the number of rows in the Table (one more than the
+	 * largest first level key)
+	 */
+	public int rowCount()
+	{
+		return rows;
+	}
+
+	/**
+	 * Replaces the value of an entry of the Table
+	 * @param keyA: the first level key of the entry
+	 * @param k: the position of the entry in the row of keyA
+	 * @param valueC: the new value of the entry
+	 */
+	public void set(int keyA, int k, int valueC)
+	{
+		if(isFrozen())
+			throw new UnsupportedOperationException("The Table is frozen");
+		rowValues[keyA][k] = valueC;
+	}
+
+	/**
+	 * @return the total number of entries in the Table
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param keyA: the first level key to search in the Table
+	 * @return the number of entries with keyA
+	 */
+	public int size(int keyA)
+	{
+		if(keyA < 0 || keyA >= rows)
+			return 0;
+		if(isFrozen())
+			return offsets[keyA+1] - offsets[keyA];
+		return rowSizes[keyA];
+	}
+
+	/**
+	 * @param minRows: the minimum number of rows of the transposed Table
+	 * @return a frozen Table with the same entries as this Table, with the
+	 * first and second level keys swapped
+	 */
+	public IntTable3List transpose(int minRows)
+	{
+		int[] counts = new int[minRows];
+		for(int a = 0; a < rows; a++)
+		{
+			for(int k = 0; k < size(a); k++)
+			{
+				int b = getKey(a, k);
+				if(b >= counts.length)
+					counts = Arrays.copyOf(counts, Math.max(b+1, counts.length*2));
+				counts[b]++;
+			}
+		}
+		int n = minRows;
+		for(int b = minRows; b < counts.length; b++)
+			if(counts[b] > 0)
+				n = b+1;
+		int[] t = new int[n+1];
+		for(int b = 0; b < n; b++)
+			t[b+1] = t[b] + counts[b];
+		int[] next = Arrays.copyOf(t, n);
+		int[] k = new int[size];
+		int[] v = new int[size];
+		for(int a = 0; a < rows; a++)
+		{
+			for(int i = 0; i < size(a); i++)
+			{
+				int b = getKey(a, i);
+				k[next[b]] = a;
+				v[next[b]++] = getValue(a, i);
+			}
+		}
+		return new IntTable3List(t, k, v);
+	}
+
+//Private Methods
+
+	//Finds the position of the first entry with the two keys, or -1
+	private int indexOf(int keyA, int keyB)
+	{
+		int n = size(keyA);
+		if(n == 0)
+			return -1;
+		if(isFrozen())
+		{
+			int from = offsets[keyA];
+			int i;
+			if(keyStore != null)
+				i = keyStore.binarySearch(from, from+n, keyB);
+			else
+				i = Arrays.binarySearch(keys, from, from+n, keyB);
+			if(i < 0)
+				return -1;
+			while(i > from && getKey(keyA, i-from-1) == keyB)
+				i--;
+			return i - from;
+		}
+		for(int i = 0; i < n; i++)
+			if(rowKeys[keyA][i] == keyB)
+				return i;
+		return -1;
+	}
+}
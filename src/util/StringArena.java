@@ -0,0 +1,110 @@
+/******************************************************************************
+* Copyright 2013-2015 LASIGE                                                  *
+*                                                                             *
+* Licensed under the Apache License, Version 2.0 (the "License"); you may     *
+* not use this file except in compliance with the License. You may obtain a   *
+* copy of the License at http://www.apache.org/licenses/LICENSE-2.0           *
+*                                                                             *
+* Unless required by applicable law or agreed to in writing, software         *
+* distributed under the License is distributed on an "AS IS" BASIS,           *
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.    *
+* See the License for the specific language governing permissions and         *
+* limitations under the License.                                              *
+*                                                                             *
+*******************************************************************************
+* An indexed list of Strings stored as UTF-8 bytes in a single growable byte  *
+* array (arena), with the offset of each String in it. Strings are only       *
+* decoded when they are retrieved, so a list that is rarely read takes about  *
+* one byte per (ASCII) character instead of a String object per entry.        *
+*                                                                             *
+* @author Daniel Faria                                                        *
+******************************************************************************/
+package util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+public class StringArena
+{
+
+//Attributes
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	//The bytes of all Strings, and the offset of each String in them (plus
+	//the end of the last String)
+	private byte[] bytes;
+	private int[] offsets;
+	private int size;
+	//The entries that are null
+	private BitSet nulls;
+
+//Constructors
+
+	/**
+	 * Constructs a new empty StringArena
+	 */
+	public StringArena()
+	{
+		bytes = new byte[1024];
+		offsets = new int[17];
+		size = 0;
+		nulls = new BitSet();
+	}
+
+//Public Methods
+
+	/**
+	 * Adds a String to the end of the list
+	 * @param s: the String to add (can be null)
+	 * @return the index of the String in the list
+	 */
+	public int add(String s)
+	{
+		if(size+1 == offsets.length)
+			offsets = Arrays.copyOf(offsets, offsets.length*2);
+		int start = offsets[size];
+		if(s == null)
+			nulls.set(size);
+		else
+		{
+			byte[] b = s.getBytes(UTF8);
+			if(start + b.length > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length*2, start + b.length));
+			System.arraycopy(b, 0, bytes, start, b.length);
+			start += b.length;
+		}
+		offsets[++size] = start;
+		return size-1;
+	}
+
+	/**
+	 * @param index: the index of the String to get
+	 * @return the String with the given index (decoded from the arena)
+	 */
+	public String get(int index)
+	{
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		if(nulls.get(index))
+			return null;
+		return new String(bytes, offsets[index], offsets[index+1]-offsets[index], UTF8);
+	}
+
+	/**
+	 * @return the number of Strings in the list
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Trims the arena to the bytes in use
+	 */
+	public void trim()
+	{
+		bytes = Arrays.copyOf(bytes, offsets[size]);
+		offsets = Arrays.copyOf(offsets, size+1);
+	}
+}
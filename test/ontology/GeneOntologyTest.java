@@ -0,0 +1,253 @@
+package ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import metrics.CoSim;
+import metrics.JiangConrath;
+import metrics.Lin;
+import metrics.PekarStaab;
+import metrics.Resnik;
+import metrics.TermSimilarityMetric;
+
+import org.junit.Test;
+
+public class GeneOntologyTest
+{
+	//The test ontology (183 classes in three sub-ontologies, with part_of,
+	//regulates, occurs_in and has_part relationships, alternative ids and
+	//an obsolete class) and its annotations
+	static final String GO = "test/data/go.obo";
+	static final String ANNOTATIONS = "test/data/ann.gaf";
+	//The same ontology in OWL
+	static final String OWL = "test/data/go.owl";
+	//A small ontology with equivalent classes, one of them in both directions
+	static final String EQUIVALENT = "test/data/equivalent.obo";
+	static final String EQUIVALENT_ANNOTATIONS = "test/data/equivalent.gaf";
+
+	@Test
+	public void subsumptionMatchesTheClosure() throws Exception
+	{
+		String[][] files = {{GO, ANNOTATIONS}, {EQUIVALENT, EQUIVALENT_ANNOTATIONS}};
+		for(String[] f : files)
+		{
+			for(boolean useAllRelations : new boolean[]{false, true})
+			{
+				GeneOntology go = new GeneOntology.Builder(f[0], f[1]).useAllRelations(useAllRelations)
+						.threads(1).build();
+				int n = go.termCount();
+				for(int i = 0; i < n; i++)
+				{
+					Set<Integer> superClasses = go.getSuperClasses(i, false);
+					Set<Integer> ancestors = go.getAncestors(i);
+					for(int j = 0; j < n; j++)
+					{
+						String pair = go.getURI(i) + " " + go.getURI(j);
+						assertEquals(pair, superClasses.contains(j), go.containsSubClass(i, j));
+						assertEquals(pair, ancestors.contains(j), go.containsRelationship(i, j));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void equivalentClassIsASuperClass() throws Exception
+	{
+		GeneOntology go = new GeneOntology.Builder(EQUIVALENT, EQUIVALENT_ANNOTATIONS).threads(1).build();
+		String gamma = go.getURI("GO:0000003");
+		String delta = go.getURI("GO:0000004");
+		assertTrue(go.getSuperClasses(gamma, false).contains(delta));
+		assertTrue(go.containsSubClass(gamma, delta));
+		assertTrue(go.containsRelationship(gamma, delta));
+		assertTrue(go.containsSubClass(go.getURI("GO:0000005"), delta));
+	}
+
+	@Test
+	public void owlIsReadTheSameWithAnyNumberOfThreads() throws Exception
+	{
+		GeneOntology obo = new GeneOntology.Builder(GO, ANNOTATIONS).threads(1).build();
+		GeneOntology first = null;
+		for(int threads : new int[]{1, 2, 4})
+		{
+			GeneOntology owl = new GeneOntology.Builder(OWL, ANNOTATIONS).threads(threads).build();
+			assertEquals(obo.termCount(), owl.termCount());
+			if(first == null)
+				first = owl;
+			for(int i = 0; i < owl.termCount(); i++)
+			{
+				//The classes get the same indexes with any number of threads
+				String uri = owl.getURI(i);
+				assertEquals(first.getURI(i), uri);
+				assertEquals(uri, first.getAncestors(i), owl.getAncestors(i));
+				assertEquals(uri, first.getInfoContent(i), owl.getInfoContent(i), 0.0);
+				//And the same relationships as in the OBO release
+				int j = obo.getIndex(uri);
+				assertEquals(uri, uris(obo, obo.getSuperClasses(j, false)), uris(owl, owl.getSuperClasses(i, false)));
+				assertEquals(uri, uris(obo, obo.getAncestors(j)), uris(owl, owl.getAncestors(i)));
+				assertEquals(uri, obo.getInfoContent(j), owl.getInfoContent(i), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void micaIsTheMostInformativeCommonAncestor() throws Exception
+	{
+		for(boolean useAllRelations : new boolean[]{false, true})
+		{
+			for(boolean structural : new boolean[]{false, true})
+			{
+				GeneOntology go = new GeneOntology.Builder(GO, ANNOTATIONS).useAllRelations(useAllRelations)
+						.structural(structural).threads(1).build();
+				assertMICA(go);
+			}
+		}
+	}
+
+	@Test
+	public void lowestCommonAncestorIsTheDeepestOfTheClosest() throws Exception
+	{
+		for(boolean useAllRelations : new boolean[]{false, true})
+		{
+			GeneOntology go = new GeneOntology.Builder(GO, ANNOTATIONS).useAllRelations(useAllRelations)
+					.threads(1).build();
+			int n = go.termCount();
+			List<Set<Integer>> ancestors = ancestors(go);
+			//The pairs whose closest common ancestors have different depths
+			int ties = 0;
+			for(int i = 0; i < n; i++)
+			{
+				for(int j = 0; j < n; j++)
+				{
+					if(i == j)
+						continue;
+					String pair = go.getURI(i) + " " + go.getURI(j);
+					int lca = go.getLowestCommonAncestor(i, j);
+					if(ancestors.get(j).contains(i) || ancestors.get(i).contains(j))
+					{
+						assertEquals(pair, ancestors.get(j).contains(i) ? i : j, lca);
+						continue;
+					}
+					int lowest = Integer.MAX_VALUE;
+					int depth = -1;
+					Set<Integer> depths = new HashSet<Integer>();
+					for(int a : ancestors.get(i))
+					{
+						if(!ancestors.get(j).contains(a))
+							continue;
+						int d = go.getMaxDistance(i, a) + go.getMaxDistance(j, a);
+						if(d < lowest)
+						{
+							lowest = d;
+							depth = go.getDepth(a);
+							depths.clear();
+						}
+						else if(d == lowest)
+							depth = Math.max(depth, go.getDepth(a));
+						if(d == lowest)
+							depths.add(go.getDepth(a));
+					}
+					if(lowest == Integer.MAX_VALUE)
+					{
+						assertEquals(pair, -1, lca);
+						continue;
+					}
+					if(depths.size() > 1)
+						ties++;
+					assertEquals(pair, lowest, go.getMaxDistance(i, lca) + go.getMaxDistance(j, lca));
+					assertEquals(pair, depth, go.getDepth(lca));
+				}
+			}
+			assertTrue(ties > 0);
+		}
+	}
+
+	@Test
+	public void unknownTermsAreNotSimilar() throws Exception
+	{
+		GeneOntology go = new GeneOntology.Builder(GO, ANNOTATIONS).threads(1).build();
+		String unknown1 = "http://purl.obolibrary.org/obo/GO_9999998";
+		String unknown2 = "http://purl.obolibrary.org/obo/GO_9999999";
+		int known = 0;
+		TermSimilarityMetric[] metrics = {new Resnik(go), new Lin(go), new JiangConrath(go),
+				new PekarStaab(go), new CoSim(go, GOType.BP)};
+		for(TermSimilarityMetric m : metrics)
+		{
+			String name = m.getClass().getSimpleName();
+			assertEquals(name, 0.0, m.getTermSimilarity(unknown1, unknown2), 0.0);
+			assertEquals(name, 0.0, m.getTermSimilarity(-1, -1), 0.0);
+			assertEquals(name, 0.0, m.getTermSimilarity(known, -1), 0.0);
+			assertEquals(name, 0.0, m.getTermSimilarity(-1, known), 0.0);
+		}
+		assertEquals(-1, go.getDepth(-1));
+	}
+
+	//Checks the MICA of every pair of classes against a scan of their
+	//common ancestors: it is either class if it is the other's direct parent
+	//(or, with 'is_a' only, any ancestor of the other), and otherwise one of
+	//the common ancestors with the highest IC
+	static void assertMICA(GeneOntology go)
+	{
+		int n = go.termCount();
+		List<Set<Integer>> ancestors = ancestors(go);
+		for(int i = 0; i < n; i++)
+		{
+			Set<Integer> parents = go.useAllRelations() ? go.getParents(i) : ancestors.get(i);
+			for(int j = 0; j < i; j++)
+			{
+				Set<Integer> parentsJ = go.useAllRelations() ? go.getParents(j) : ancestors.get(j);
+				String pair = go.getURI(i) + " " + go.getURI(j);
+				if(parentsJ.contains(i) || parents.contains(j))
+				{
+					assertEquals(pair, parentsJ.contains(i) ? i : j, go.getMICA(i, j));
+					continue;
+				}
+				double max = -1;
+				for(int a : ancestors.get(i))
+					if(ancestors.get(j).contains(a))
+						max = Math.max(max, go.getInfoContent(a));
+				int mica = go.getMICA(i, j);
+				if(max < 0)
+				{
+					assertEquals(pair, -1, mica);
+					continue;
+				}
+				assertTrue(pair, mica > -1 && ancestors.get(i).contains(mica) &&
+						ancestors.get(j).contains(mica));
+				assertEquals(pair, max, go.getInfoContent(mica), 0.0);
+			}
+		}
+	}
+
+	//Gets the uris of a set of classes
+	private static Set<String> uris(GeneOntology go, Set<Integer> classes)
+	{
+		Set<String> uris = new HashSet<String>();
+		for(int i : classes)
+			uris.add(go.getURI(i));
+		return uris;
+	}
+
+	//Gets the ancestors of each class through the relationships in use
+	//(including itself)
+	static List<Set<Integer>> ancestors(GeneOntology go)
+	{
+		List<Set<Integer>> ancestors = new ArrayList<Set<Integer>>();
+		for(int i = 0; i < go.termCount(); i++)
+		{
+			Set<Integer> a = new HashSet<Integer>();
+			if(go.useAllRelations())
+				a.addAll(go.getAncestors(i));
+			else
+				a.addAll(go.getSuperClasses(i, false));
+			a.add(i);
+			ancestors.add(a);
+		}
+		return ancestors;
+	}
+}
@@ -0,0 +1,76 @@
+package ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class MICATableTest
+{
+	@Test
+	public void tableMatchesGetMICA() throws Exception
+	{
+		for(boolean useAllRelations : new boolean[]{false, true})
+		{
+			for(boolean structural : new boolean[]{false, true})
+			{
+				GeneOntology go = new GeneOntology.Builder(GeneOntologyTest.GO, GeneOntologyTest.ANNOTATIONS)
+						.useAllRelations(useAllRelations).structural(structural).threads(2).build();
+				byte[] key = OntologySnapshot.getKey(GeneOntologyTest.GO, GeneOntologyTest.ANNOTATIONS,
+						useAllRelations, structural);
+				File file = File.createTempFile("mica", ".bin");
+				try
+				{
+					MICATable.build(go, file.getPath(), key, 2);
+					MICATable t = MICATable.load(file.getPath(), key);
+					assertNotNull(t);
+					GeneOntology withTable = go.withMICATable(t);
+					int n = go.termCount();
+					int listed = 0;
+					for(int i = 0; i < n; i++)
+					{
+						for(int j = 0; j < n; j++)
+						{
+							assertEquals(go.countAnnotations(i) > 0 && go.countAnnotations(j) > 0, t.contains(i, j));
+							if(!t.contains(i, j))
+								continue;
+							listed++;
+							assertEquals(t.get(i, j), t.get(j, i));
+							assertEquals(go.getURI(i) + " " + go.getURI(j),
+									go.getInfoContent(go.getMICA(i, j)), withTable.getInfoContent(withTable.getMICA(i, j)), 0.0);
+						}
+					}
+					assertTrue(listed > 0);
+					GeneOntologyTest.assertMICA(withTable);
+				}
+				finally
+				{
+					file.delete();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void tableWithAnotherKeyIsNotLoaded() throws Exception
+	{
+		GeneOntology go = new GeneOntology.Builder(GeneOntologyTest.GO, GeneOntologyTest.ANNOTATIONS).threads(1).build();
+		byte[] key = OntologySnapshot.getKey(GeneOntologyTest.GO, GeneOntologyTest.ANNOTATIONS, false, false);
+		File file = File.createTempFile("mica", ".bin");
+		try
+		{
+			MICATable.build(go, file.getPath(), key, 1);
+			assertNull(MICATable.load(file.getPath(),
+					OntologySnapshot.getKey(GeneOntologyTest.GO, GeneOntologyTest.ANNOTATIONS, true, false)));
+			assertNotNull(MICATable.load(file.getPath(), key));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Vector;
+
+import metrics.BestMatchAverage;
+import metrics.GeneSimilarityMetric;
+import metrics.PekarStaab;
+import metrics.Resnik;
+import metrics.SimGIC;
+
+import org.junit.Test;
+
+import util.Table3List;
+
+public class OntologyDiffTest
+{
+	//A second release of the test ontology: GO:0100300 is added below
+	//GO:0100004, GO:0100169 is removed, GO:0100165 is made obsolete, the
+	//'is_a' relationship of GO:0100004 to the root is removed and a 'part_of'
+	//relationship from GO:0100177 to GO:0100142 is added
+	static final String GO2 = "test/data/go2.obo";
+	private static final String OBO = "http://purl.obolibrary.org/obo/";
+	private static final String PART_OF = OBO + "BFO_0000050";
+
+	@Test
+	public void termsAndRelationshipsAreCompared() throws Exception
+	{
+		GeneOntology oldGO = build(GeneOntologyTest.GO, false, null);
+		GeneOntology newGO = build(GO2, false, null);
+		OntologyDiff d = new OntologyDiff(oldGO, newGO);
+		assertEquals(uris("GO_0100300"), d.getAddedTerms());
+		assertEquals(uris("GO_0100169"), d.getRemovedTerms());
+		assertEquals(uris("GO_0100165"), d.getObsoleteTerms());
+
+		Table3List<String,String,Relationship> added = d.getAddedRelationships();
+		assertEquals(2, added.size());
+		assertRelationship(added, "GO_0100300", "GO_0100004", null);
+		assertRelationship(added, "GO_0100177", "GO_0100142", PART_OF);
+		Table3List<String,String,Relationship> removed = d.getRemovedRelationships();
+		assertEquals(5, removed.size());
+		assertRelationship(removed, "GO_0100004", "GO_0008150", null);
+		assertRelationship(removed, "GO_0100165", "GO_0100137", null);
+		assertRelationship(removed, "GO_0100169", "GO_0100152", PART_OF);
+
+		//A class is changed if its ancestors, their distances, or its IC or
+		//annotations changed
+		Set<String> changed = d.getChangedTerms();
+		assertTrue(changed.containsAll(uris("GO_0100300", "GO_0100177")));
+		assertFalse(changed.contains(OBO + "GO_0100142"));
+		int count = 0;
+		for(int i = 0; i < newGO.termCount(); i++)
+		{
+			String uri = newGO.getURI(i);
+			int j = oldGO.getIndex(uri);
+			if(j < 0)
+				continue;
+			boolean same = newGO.countAnnotations(i) == oldGO.countAnnotations(j) &&
+					newGO.getInfoContent(i) == oldGO.getInfoContent(j) &&
+					distances(newGO, i).equals(distances(oldGO, j));
+			assertTrue(uri, same || changed.contains(uri));
+			if(!same)
+				count++;
+		}
+		assertTrue(count > 0);
+	}
+
+	@Test
+	public void sameReleaseHasNoDifferences() throws Exception
+	{
+		GeneOntology go = build(GeneOntologyTest.GO, true, null);
+		OntologyDiff d = new OntologyDiff(go, build(GeneOntologyTest.GO, true, null));
+		assertTrue(d.getAddedTerms().isEmpty());
+		assertTrue(d.getRemovedTerms().isEmpty());
+		assertTrue(d.getObsoleteTerms().isEmpty());
+		assertEquals(0, d.getAddedRelationships().size());
+		assertEquals(0, d.getRemovedRelationships().size());
+		assertTrue(d.getChangedTerms().isEmpty());
+		assertTrue(d.getInvalidatedGenes().isEmpty());
+	}
+
+	@Test
+	public void scoresOfOtherGenesAreUnchanged() throws Exception
+	{
+		for(boolean useAllRelations : new boolean[]{false, true})
+		{
+			GeneOntology oldGO = build(GeneOntologyTest.GO, useAllRelations, null);
+			GeneOntology newGO = build(GO2, useAllRelations, null);
+			OntologyDiff d = new OntologyDiff(oldGO, newGO);
+			List<String> genes = newGO.getGenes();
+			Set<String> invalidated = d.getInvalidatedGenes();
+			assertFalse(invalidated.isEmpty());
+			assertTrue(invalidated.size() < genes.size());
+			//A gene product annotated to a changed class is invalidated
+			for(String g : genes)
+				for(int t : newGO.getAnnotationView(g))
+					if(d.getChangedTerms().contains(newGO.getURI(t)))
+						assertTrue(g, invalidated.contains(g));
+			GeneSimilarityMetric[] oldMetrics = metrics(oldGO);
+			GeneSimilarityMetric[] newMetrics = metrics(newGO);
+			for(String g1 : genes)
+			{
+				for(String g2 : genes)
+				{
+					if(d.isInvalidated(g1, g2))
+						continue;
+					for(int m = 0; m < oldMetrics.length; m++)
+						assertEquals(g1 + " " + g2, oldMetrics[m].getGeneSimilarity(g1, g2),
+								newMetrics[m].getGeneSimilarity(g1, g2), 1e-9);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void closureOfThePreviousReleaseIsReused() throws Exception
+	{
+		for(boolean useAllRelations : new boolean[]{false, true})
+		{
+			GeneOntology oldGO = build(GeneOntologyTest.GO, useAllRelations, null);
+			GeneOntology full = build(GO2, useAllRelations, null);
+			GeneOntology reused = build(GO2, useAllRelations, oldGO);
+			assertEquals(full.termCount(), reused.termCount());
+			for(int i = 0; i < full.termCount(); i++)
+			{
+				String uri = full.getURI(i);
+				assertEquals(uri, reused.getURI(i));
+				assertEquals(uri, full.getAncestors(i), reused.getAncestors(i));
+				assertEquals(uri, full.getSuperClasses(i, false), reused.getSuperClasses(i, false));
+				for(int a : full.getAncestors(i))
+					assertEquals(uri, full.getMaxDistance(i, a), reused.getMaxDistance(i, a));
+				assertEquals(uri, full.getInfoContent(i), reused.getInfoContent(i), 0.0);
+			}
+		}
+	}
+
+	//Builds a release of the test ontology with the test annotations
+	private static GeneOntology build(String file, boolean useAllRelations, GeneOntology previous) throws Exception
+	{
+		return new GeneOntology.Builder(file, GeneOntologyTest.ANNOTATIONS).useAllRelations(useAllRelations)
+				.previous(previous).threads(1).build();
+	}
+
+	//Gets the gene similarity metrics compared between releases
+	private static GeneSimilarityMetric[] metrics(GeneOntology go)
+	{
+		return new GeneSimilarityMetric[]{new SimGIC(go, null), new BestMatchAverage(go, null, new Resnik(go)),
+				new BestMatchAverage(go, null, new PekarStaab(go))};
+	}
+
+	//Checks that a table of relationships has a relationship at distance 1
+	//with the given property between two classes
+	private static void assertRelationship(Table3List<String,String,Relationship> table, String child,
+			String parent, String property)
+	{
+		Vector<Relationship> rels = table.get(OBO + child, OBO + parent);
+		boolean found = false;
+		if(rels != null)
+			for(Relationship r : rels)
+				found |= r.getDistance() == 1 && Objects.equals(property, r.getProperty());
+		assertTrue(child + " " + parent, found);
+	}
+
+	//Gets the uris of the ancestors of a class, each with its max distance
+	private static Set<String> distances(GeneOntology go, int index)
+	{
+		Set<String> distances = new HashSet<String>();
+		for(int a : go.getAncestors(index))
+			distances.add(go.getURI(a) + " " + go.getMaxDistance(index, a));
+		return distances;
+	}
+
+	//Gets the uris of the given local names
+	private static Set<String> uris(String... names)
+	{
+		Set<String> uris = new HashSet<String>();
+		for(String n : names)
+			uris.add(OBO + n);
+		return uris;
+	}
+}
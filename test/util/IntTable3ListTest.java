@@ -0,0 +1,109 @@
+package util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntTable3ListTest
+{
+	@Test
+	public void getReturnsTheValuesOfAPairInInsertionOrder()
+	{
+		IntTable3List t = new IntTable3List(0);
+		t.add(2, 5, 1);
+		t.add(2, 3, 7);
+		t.add(2, 5, 4);
+		t.add(0, 5, 9);
+		t.add(2, 5, 2);
+		for(int pass = 0; pass < 2; pass++)
+		{
+			assertArrayEquals(new int[]{1, 4, 2}, t.get(2, 5));
+			assertArrayEquals(new int[]{7}, t.get(2, 3));
+			assertArrayEquals(new int[]{9}, t.get(0, 5));
+			assertNull(t.get(2, 4));
+			assertNull(t.get(1, 5));
+			assertNull(t.get(7, 5));
+			assertTrue(t.contains(2, 3));
+			assertFalse(t.contains(0, 3));
+			assertEquals(3, t.rowCount());
+			assertEquals(5, t.size());
+			assertEquals(4, t.size(2));
+			assertEquals(0, t.size(1));
+			t.freeze();
+		}
+		//Frozen rows are sorted by second level key
+		assertEquals(3, t.getKey(2, 0));
+		assertEquals(5, t.getKey(2, 1));
+		assertEquals(1, t.getValue(2, 1));
+	}
+
+	@Test
+	public void frozenTableIsReadOnly()
+	{
+		IntTable3List t = new IntTable3List(1);
+		t.add(0, 1, 2);
+		t.freeze();
+		assertTrue(t.isFrozen());
+		try
+		{
+			t.add(0, 2, 3);
+			fail("Added to a frozen table");
+		}
+		catch(UnsupportedOperationException e)
+		{
+		}
+	}
+
+	@Test
+	public void transposeSwapsTheKeys() throws Exception
+	{
+		Random r = new Random(42);
+		IntTable3List t = new IntTable3List(0);
+		List<int[]> entries = new ArrayList<int[]>();
+		for(int i = 0; i < 2000; i++)
+		{
+			int[] e = {r.nextInt(60), r.nextInt(80), r.nextInt(1000)};
+			t.add(e[0], e[1], e[2]);
+			entries.add(e);
+		}
+		for(IntTable3List tt : new IntTable3List[]{t.transpose(0), t.transpose(100)})
+		{
+			assertTrue(tt.isFrozen());
+			assertEquals(t.size(), tt.size());
+			for(int[] e : entries)
+			{
+				assertTrue(tt.contains(e[1], e[0]));
+				assertArrayEquals(t.get(e[0], e[1]), tt.get(e[1], e[0]));
+			}
+			for(int b = 0; b < tt.rowCount(); b++)
+				for(int k = 1; k < tt.size(b); k++)
+					assertTrue(tt.getKey(b, k-1) <= tt.getKey(b, k));
+		}
+		assertEquals(80, t.transpose(0).rowCount());
+		assertEquals(100, t.transpose(100).rowCount());
+		//The transpose of the transpose has the same entries
+		t.freeze();
+		IntTable3List back = t.transpose(0).transpose(t.rowCount());
+		assertEquals(t.rowCount(), back.rowCount());
+		for(int a = 0; a < t.rowCount(); a++)
+		{
+			assertEquals(t.size(a), back.size(a));
+			for(int k = 0; k < t.size(a); k++)
+				assertEquals(t.getKey(a, k), back.getKey(a, k));
+		}
+		//And so does the off heap table
+		IntTable3List off = t.offHeap(null);
+		for(int[] e : entries)
+			assertArrayEquals(t.get(e[0], e[1]), off.get(e[0], e[1]));
+		assertNull(off.get(0, 80));
+	}
+}